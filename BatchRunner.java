@@ -0,0 +1,257 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Computes many schedule files in one run. When the JVM has virtual threads,
+ * every file gets its own, while a semaphore keeps the number of schedules
+ * being parsed and computed at once to a limit, since that work is bound by
+ * the CPU. Otherwise a fixed pool of that many platform threads takes the files
+ * in turn, so a large batch never parks a thread per file. Matrices are parsed
+ * with the processors left to each of the files computed at once. Each file's
+ * table is written next to it (or to an output directory), and a failure in
+ * one file is recorded in its summary line rather than stopping the others.
+ * Files whose tables would be written to the same place, such as two files
+ * with the same name and an output directory, are found before any are run:
+ * only the first is computed, and the others fail with the name it took.
+ *
+ * @author Aaron Goin
+ */
+public class BatchRunner {
+	private final CriticalPathEngine engine;
+	private final char format;
+	private final ResultWriter writer;
+	private final int limit;
+	private final File outDir;
+
+	/**
+	 * @param engine the engine every file is computed with
+	 * @param format 'm' for adjacency matrices, 'e' for edge lists, or 'b' for
+	 *               compiled graph files
+	 * @param writer the writer each file's nodes are written with
+	 * @param limit  the most files computed at once
+	 * @param outDir the directory tables are written to, or null to write each
+	 *               table next to its file
+	 */
+	public BatchRunner(CriticalPathEngine engine, char format, ResultWriter writer, int limit, File outDir) {
+		this.engine = engine;
+		this.format = format;
+		this.writer = writer;
+		this.limit = Math.max(1, limit);
+		this.outDir = outDir;
+	}
+
+	/**
+	 * Finds the files named by a directory, which is every file in it, or by a
+	 * list file, which names one file per line.
+	 *
+	 * @param dirOrList the name of a directory or list file
+	 * @return the file names, sorted for a directory, in order for a list
+	 * @throws IOException if the directory or list can't be read
+	 */
+	public static List<String> listFiles(String dirOrList) throws IOException {
+		File d = new File(dirOrList);
+		ArrayList<String> files = new ArrayList<String>();
+		if (d.isDirectory()) {
+			File[] all = d.listFiles();
+			if (all == null) {
+				throw new IOException("Unable to list " + dirOrList);
+			}
+			Arrays.sort(all);
+			for (File f : all) {
+				if (f.isFile() && !f.getName().endsWith(".out")) {
+					files.add(f.getPath());
+				}
+			}
+		} else {
+			for (String line : Files.readAllLines(d.toPath())) {
+				if (!line.trim().equals("")) {
+					files.add(line.trim());
+				}
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Computes every file, writes each table, and returns a summary of each file
+	 * in the order given.
+	 *
+	 * @param files the names of the schedule files
+	 * @return the summary of each file
+	 * @throws InterruptedException if the run is interrupted
+	 */
+	public List<FileResult> run(List<String> files) throws InterruptedException {
+		ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+		ExecutorService pool = virtual != null ? virtual : Executors.newFixedThreadPool(limit);
+		Semaphore permits = virtual != null ? new Semaphore(limit) : null;// a fixed pool is its own limit
+		int busy = Math.min(limit, Math.max(1, files.size()));// the files computed at once
+		int parseThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / busy);
+		ArrayList<Future<FileResult>> futures = new ArrayList<Future<FileResult>>();
+		HashMap<String, String> tables = new HashMap<String, String>();// each table file, and the file it's for
+		try {
+			for (String f : files) {
+				String first = tables.putIfAbsent(tableFile(f).toPath().toAbsolutePath().normalize().toString(), f);
+				if (first != null) {
+					futures.add(CompletableFuture.completedFuture(
+							new FileResult(f, "its table would overwrite the table of " + first)));
+				} else if (permits == null) {
+					futures.add(pool.submit(() -> runOne(f, parseThreads)));
+				} else {
+					futures.add(pool.submit(() -> {
+						permits.acquire();
+						try {
+							return runOne(f, parseThreads);
+						} finally {
+							permits.release();
+						}
+					}));
+				}
+			}
+
+			ArrayList<FileResult> results = new ArrayList<FileResult>();
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					results.add(futures.get(i).get());
+				} catch (ExecutionException e) {
+					results.add(new FileResult(files.get(i), e.getCause().toString()));
+				}
+			}
+			return results;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Loads, computes, and writes the table of one file.
+	 *
+	 * @param filename the name of the schedule file
+	 * @param threads  the most threads a matrix is parsed with
+	 * @return the file's summary, or its error
+	 */
+	private FileResult runOne(String filename, int threads) {
+		try {
+			Schedule schedule;
+			if (format == 'b') {
+				schedule = engine.loadCompiled(filename);
+			} else if (format == 'e') {
+				schedule = engine.loadEdgeList(filename);
+			} else {
+				schedule = engine.loadMatrix(filename, threads);
+			}
+			ScheduleResult result = engine.compute(schedule);
+			writer.write(result, tableFile(filename).getPath());
+			return new FileResult(filename, result);
+		} catch (ScheduleException e) {
+			return new FileResult(filename, "improper format: " + e.getMessage());
+		} catch (IOException e) {
+			return new FileResult(filename, e.toString());
+		} catch (RuntimeException e) {
+			return new FileResult(filename, e.toString());
+		}
+	}
+
+	/**
+	 * @param filename the name of a schedule file
+	 * @return the file its table is written to
+	 */
+	private File tableFile(String filename) {
+		File in = new File(filename);
+		File dir = outDir == null ? in.getAbsoluteFile().getParentFile() : outDir;
+		return new File(dir, in.getName() + ".out");
+	}
+
+	/**
+	 * @return an executor that starts a virtual thread per task, or null if the
+	 *         JVM has no virtual threads
+	 */
+	private static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * The summary of one file in a batch: its project duration and critical
+	 * activities, or why it failed.
+	 */
+	public static class FileResult {
+		private final String filename;
+		private final int duration;
+		private final List<String> critical;
+		private final String error;
+
+		FileResult(String filename, ScheduleResult result) {
+			this.filename = filename;
+			this.duration = result.getDuration();
+			this.critical = new ArrayList<String>();
+			for (int i = 0; i < result.size(); i++) {
+				int v = result.nodeAt(i);
+				if (result.getSlack(v) == 0) {
+					critical.add(result.getName(v));
+				}
+			}
+			this.error = null;
+		}
+
+		FileResult(String filename, String error) {
+			this.filename = filename;
+			this.duration = -1;
+			this.critical = new ArrayList<String>();
+			this.error = error;
+		}
+
+		/**
+		 * @return the name of the file
+		 */
+		public String getFilename() {
+			return filename;
+		}
+
+		/**
+		 * @return the project duration, or -1 if the file failed
+		 */
+		public int getDuration() {
+			return duration;
+		}
+
+		/**
+		 * @return the names of the activities with no slack time, in topological
+		 *         order
+		 */
+		public List<String> getCritical() {
+			return critical;
+		}
+
+		/**
+		 * @return why the file failed, or null if it didn't
+		 */
+		public String getError() {
+			return error;
+		}
+
+		/**
+		 * A summary line with the file name, then its duration and critical
+		 * activities, or its error.
+		 */
+		public String toString() {
+			if (error != null) {
+				return filename + "   ERROR " + error;
+			}
+			return filename + "   " + duration + "   " + String.join(" ", critical);
+		}
+	}
+}
@@ -0,0 +1,219 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits a schedule into the independent projects it joins at S and F, and
+ * discovers EC and LC values for each project on its own. Two activities are
+ * in the same project when they are connected by edges that don't touch S or
+ * F, which a union-find over those edges finds in nearly linear time. The only
+ * values projects share are the EC of S, which is 0, and the LC of F, which is
+ * the project duration, so once F's EC is known every project's LC values can
+ * be found at once as well.
+ * <p>
+ * Small projects are grouped into chunks of at least THRESHOLD activities, and
+ * chunks are swept across a fork-join pool, so a file of many merged projects
+ * scales with the number of cores however deep each project is.
+ *
+ * @author Aaron Goin
+ */
+public class ComponentSweep {
+	static final int THRESHOLD = 4096;// the fewest nodes swept by one task, unless it's the last
+
+	private final CsrGraph graph;
+	private final int s;
+	private final int f;
+	private final int[] byComponent;// the activities, grouped by project, in topological order within each
+	private final int[] chunkOff;// where each chunk starts in byComponent
+	private final int components;
+	private final int largest;
+
+	/**
+	 * @param graph the graph being swept
+	 * @param order a topological sequence of the graph, from S to F
+	 */
+	public ComponentSweep(CsrGraph graph, int[] order) {
+		this.graph = graph;
+		int n = order.length;
+		s = order[0];
+		f = order[n - 1];
+
+		/* Union every edge between two activities, halving paths as they're walked */
+		int[] parent = new int[n];
+		int[] size = new int[n];
+		for (int v = 0; v < n; v++) {
+			parent[v] = v;
+			size[v] = 1;
+		}
+		for (int u = 0; u < n; u++) {
+			if (u == s) {
+				continue;
+			}
+			for (int e = graph.outStart(u); e < graph.outEnd(u); e++) {
+				int t = graph.outTarget(e);
+				if (t == f) {
+					continue;
+				}
+				int a = find(parent, u);
+				int b = find(parent, t);
+				if (a != b) {
+					if (size[a] < size[b]) {
+						int x = a;
+						a = b;
+						b = x;
+					}
+					parent[b] = a;
+					size[a] += size[b];
+				}
+			}
+		}
+
+		/* Number each project by its first activity in the sequence, then counting sort by project */
+		int[] comp = new int[n];
+		Arrays.fill(comp, -1);
+		int count = 0;
+		int big = 0;
+		for (int i = 1; i < n - 1; i++) {
+			int r = find(parent, order[i]);
+			if (comp[r] < 0) {
+				comp[r] = count++;
+				big = Math.max(big, size[r]);
+			}
+		}
+		components = count;
+		largest = big;
+		int[] compOff = new int[count + 1];
+		for (int i = 1; i < n - 1; i++) {
+			compOff[comp[find(parent, order[i])] + 1]++;
+		}
+		for (int c = 0; c < count; c++) {
+			compOff[c + 1] += compOff[c];
+		}
+		byComponent = new int[n - 2];
+		int[] pos = Arrays.copyOf(compOff, count);
+		for (int i = 1; i < n - 1; i++) {
+			byComponent[pos[comp[find(parent, order[i])]]++] = order[i];
+		}
+
+		/* Group whole projects into chunks of at least THRESHOLD activities */
+		int[] chunks = new int[count + 1];
+		int k = 0;
+		for (int c = 0; c < count; c++) {
+			if (compOff[c + 1] - chunks[k] >= THRESHOLD || c == count - 1) {
+				chunks[++k] = compOff[c + 1];
+			}
+		}
+		chunkOff = Arrays.copyOf(chunks, k + 1);
+	}
+
+	private static int find(int[] parent, int v) {
+		while (parent[v] != v) {
+			parent[v] = parent[parent[v]];
+			v = parent[v];
+		}
+		return v;
+	}
+
+	/**
+	 * @return the number of independent projects between S and F
+	 */
+	public int components() {
+		return components;
+	}
+
+	/**
+	 * @return the number of activities in the largest project
+	 */
+	public int largest() {
+		return largest;
+	}
+
+	/**
+	 * Discovers the EC value of every node, sweeping projects in parallel and F
+	 * once they're all done.
+	 *
+	 * @param eC   the array the EC values are stored in
+	 * @param pool the pool the chunks of projects are split across
+	 */
+	public void discoverEC(int[] eC, ForkJoinPool pool) {
+		eC[s] = 0;
+		sweep(eC, null, 0, chunkOff.length - 1, pool);
+		eC[f] = graph.maxIn(eC, f);
+	}
+
+	/**
+	 * Discovers the LC value of every node from F, whose LC is its EC, sweeping
+	 * projects in parallel and S once they're all done.
+	 *
+	 * @param eC   the discovered EC values
+	 * @param lC   the array the LC values are stored in
+	 * @param pool the pool the chunks of projects are split across
+	 */
+	public void discoverLC(int[] eC, int[] lC, ForkJoinPool pool) {
+		lC[f] = eC[f];
+		sweep(null, lC, 0, chunkOff.length - 1, pool);
+		lC[s] = graph.minOut(lC, s);
+	}
+
+	/**
+	 * Sweeps a run of chunks, forking when there is more than one.
+	 *
+	 * @param eC the EC values, when sweeping forwards, otherwise null
+	 * @param lC the LC values, when sweeping backwards
+	 * @param lo the first chunk
+	 * @param hi the chunk after the last
+	 */
+	private void sweep(int[] eC, int[] lC, int lo, int hi, ForkJoinPool pool) {
+		if (hi - lo <= 1) {
+			sweepChunks(eC, lC, lo, hi);
+		} else {
+			pool.invoke(new ChunkTask(eC, lC, lo, hi));
+		}
+	}
+
+	/**
+	 * Discovers the EC or LC value of each activity in a run of chunks, forwards
+	 * or backwards through each project's part of the sequence.
+	 */
+	private void sweepChunks(int[] eC, int[] lC, int lo, int hi) {
+		int from = chunkOff[lo];
+		int to = chunkOff[hi];
+		if (eC != null) {
+			for (int i = from; i < to; i++) {
+				eC[byComponent[i]] = graph.maxIn(eC, byComponent[i]);
+			}
+		} else {
+			for (int i = to - 1; i >= from; i--) {
+				lC[byComponent[i]] = graph.minOut(lC, byComponent[i]);
+			}
+		}
+	}
+
+	/**
+	 * Splits a run of chunks in half until each task has one.
+	 */
+	private class ChunkTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int[] eC;
+		private final int[] lC;
+		private final int lo;
+		private final int hi;
+
+		ChunkTask(int[] eC, int[] lC, int lo, int hi) {
+			this.eC = eC;
+			this.lC = lC;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo <= 1) {
+				sweepChunks(eC, lC, lo, hi);
+			} else {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new ChunkTask(eC, lC, lo, mid), new ChunkTask(eC, lC, mid, hi));
+			}
+		}
+	}
+}
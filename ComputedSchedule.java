@@ -0,0 +1,47 @@
+/**
+ * The EC, LC, and slack time of every node of a computed schedule, in a
+ * topological sequence, however the schedule is stored.
+ *
+ * @author Aaron Goin
+ */
+public interface ComputedSchedule {
+	/**
+	 * @return the number of nodes
+	 */
+	int size();
+
+	/**
+	 * @param i a place in the topological sequence, from 0 to size() - 1
+	 * @return the node at that place
+	 */
+	int nodeAt(int i);
+
+	/**
+	 * @param v a node
+	 * @return the name of the node
+	 */
+	String getName(int v);
+
+	/**
+	 * @param v a node
+	 * @return the EC value of the node
+	 */
+	int getEC(int v);
+
+	/**
+	 * @param v a node
+	 * @return the LC value of the node
+	 */
+	int getLC(int v);
+
+	/**
+	 * @param v a node
+	 * @return the slack time of the node, its LC minus its EC
+	 */
+	int getSlack(int v);
+
+	/**
+	 * @return the EC value of F, which is the length of the project
+	 */
+	int getDuration();
+}
@@ -0,0 +1,646 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Shortens a schedule at the least cost, given how far each activity can be
+ * crashed and what each day of crashing it costs. Each step finds the cheapest
+ * way to take a day off every critical path with a minimum cut through the
+ * critical activities, which may also give back a day to activities crashed
+ * in an earlier step when that saves more than it costs (Phillips and
+ * Dessouky). The cut is then applied for as many days as it stays the
+ * cheapest: until an activity reaches its crash or normal duration, or a path
+ * with slack time becomes critical.
+ * <p>
+ * Durations are changed through an IncrementalSchedule, so each step only
+ * rediscovers the EC and LC values its changes reach instead of the whole
+ * schedule.
+ *
+ * @author Aaron Goin
+ */
+public class CrashSolver {
+	private static final double EPS = 1e-9;
+
+	private final Schedule schedule;
+	private final int[] normal;
+	private final int[] crash;
+	private final double[] slope;// the cost of each day an activity is crashed
+
+	/**
+	 * @param schedule the schedule being crashed
+	 * @param costs    the normal and crash duration, and normal and crash cost,
+	 *                 of each node, by id, as costs[node] = {normal, crash,
+	 *                 normalCost, crashCost}
+	 */
+	public CrashSolver(Schedule schedule, double[][] costs) {
+		int n = schedule.graph().size();
+		this.schedule = schedule;
+		normal = new int[n];
+		crash = new int[n];
+		slope = new double[n];
+		for (int v = 0; v < n; v++) {
+			normal[v] = (int) costs[v][0];
+			crash[v] = (int) costs[v][1];
+			if (normal[v] > crash[v]) {
+				slope[v] = (costs[v][3] - costs[v][2]) / (normal[v] - crash[v]);
+			}
+		}
+	}
+
+	/**
+	 * Reads crash costs from a text file with one "name normal crash normalCost
+	 * crashCost" line per activity. The normal duration must be the activity's
+	 * duration in the schedule, and activities that aren't listed can't be
+	 * crashed.
+	 *
+	 * @param schedule the schedule whose activities are crashed
+	 * @param filename the name of the costs file
+	 * @return the costs of every node, by id, as {normal, crash, normalCost,
+	 *         crashCost}
+	 * @throws IOException       if the file can't be read
+	 * @throws ScheduleException if a line is formatted incorrectly, names an
+	 *                           unknown node or one already listed, or doesn't
+	 *                           have 0 &lt;= crash &lt;= normal and normalCost
+	 *                           &lt;= crashCost
+	 */
+	public static double[][] readCosts(Schedule schedule, String filename) throws IOException, ScheduleException {
+		CsrGraph graph = schedule.graph();
+		SymbolTable symbols = schedule.symbols();
+		double[][] costs = new double[graph.size()][];
+		for (int v = 0; v < costs.length; v++) {
+			double d = graph.inDegree(v) == 0 ? 0 : graph.inWeight(graph.inStart(v));
+			costs[v] = new double[] { d, d, 0, 0 };
+		}
+		boolean[] read = new boolean[costs.length];
+
+		try (BufferedReader r = new BufferedReader(new FileReader(filename))) {
+			String line;
+			int lineNum = 0;
+			while ((line = r.readLine()) != null) {
+				lineNum++;
+				line = line.trim();
+				if (line.equals("")) {
+					continue;
+				}
+				String[] parts = line.split("\\s+");
+				if (parts.length != 5) {
+					throw new ScheduleException("line " + lineNum + ": expected \"name normal crash normalCost crashCost\"");
+				}
+				int v = symbols.id(parts[0]);
+				if (v < 0) {
+					throw new ScheduleException("line " + lineNum + ": no node named " + parts[0]);
+				}
+				if (graph.inDegree(v) == 0 || v == schedule.order()[schedule.order().length - 1]) {
+					throw new ScheduleException("line " + lineNum + ": S and F have no duration");
+				}
+				if (read[v]) {
+					throw new ScheduleException("line " + lineNum + ": a second line of costs for " + parts[0]);
+				}
+				read[v] = true;
+				double[] c = new double[4];
+				for (int i = 0; i < 4; i++) {
+					try {
+						c[i] = i < 2 ? Integer.parseInt(parts[i + 1]) : Double.parseDouble(parts[i + 1]);
+					} catch (NumberFormatException ex) {
+						throw new ScheduleException("line " + lineNum + ": " + parts[i + 1] + " is not "
+								+ (i < 2 ? "an integer" : "a number"));
+					}
+				}
+				if (c[0] != costs[v][0]) {
+					throw new ScheduleException("line " + lineNum + ": the normal duration of " + parts[0] + " is "
+							+ (int) costs[v][0]);
+				}
+				if (!(0 <= c[1] && c[1] <= c[0]) || !(c[2] <= c[3]) || Double.isInfinite(c[3])) {
+					throw new ScheduleException("line " + lineNum + ": must have 0 <= crash <= normal and "
+							+ "normalCost <= crashCost");
+				}
+				costs[v] = c;
+			}
+		}
+		return costs;
+	}
+
+	/**
+	 * Shortens the schedule one cut at a time, each the cheapest way to shorten
+	 * it from where the last one left it.
+	 *
+	 * @param days the most days to take off the project, or 0 to shorten it as
+	 *             far as it goes
+	 * @return the steps taken and the crashed durations
+	 */
+	public Result crash(int days) {
+		if (days < 0) {
+			throw new IllegalArgumentException("days must not be negative");
+		}
+		CsrGraph graph = schedule.graph();
+		int n = graph.size();
+		int s = schedule.order()[0];
+		int f = schedule.order()[n - 1];
+		IncrementalSchedule inc = new IncrementalSchedule(graph, schedule.order());
+		int[] dur = normal.clone();
+		int start = inc.getDuration();
+		int target = days == 0 ? 0 : Math.max(0, start - days);
+		ArrayList<Step> steps = new ArrayList<Step>();
+		double cost = 0;
+		boolean[] critical = new boolean[n];
+		Cut cut = new Cut(n);
+
+		while (inc.getDuration() > target) {
+			for (int v = 0; v < n; v++) {
+				critical[v] = inc.getSlack(v) == 0;
+			}
+			if (!cut.find(graph, inc, critical, dur, s, f, true)) {
+				break;// every cut crosses an activity that can't be crashed any further
+			}
+			int step = apply(cut, inc, dur, target);
+			if (step == 0) {
+				/* Giving days back lengthens a nearly critical path past the new duration */
+				if (!cut.find(graph, inc, critical, dur, s, f, false)) {
+					break;
+				}
+				step = apply(cut, inc, dur, target);
+			}
+			if (step == 0) {
+				break;
+			}
+			cost += cut.cost * step;
+			steps.add(new Step(inc.getDuration(), cost, names(cut.shorten), names(cut.lengthen), step));
+		}
+		return new Result(start, inc.getDuration(), cost, steps, dur);
+	}
+
+	/**
+	 * Applies a cut for as many days as it shortens the project by a day each:
+	 * until an activity reaches its crash or normal duration, the target is met,
+	 * or a path that wasn't critical would be longer than the rest. Paths only
+	 * change length linearly, so if the project is exactly that many days shorter
+	 * the cut held for every day in between, and the most days it holds for are
+	 * found by bisection.
+	 *
+	 * @return the number of days applied, 0 if the cut doesn't hold for one
+	 */
+	private int apply(Cut cut, IncrementalSchedule inc, int[] dur, int target) {
+		int d = inc.getDuration();
+		int limit = d - target;
+		for (int v : cut.shorten) {
+			limit = Math.min(limit, dur[v] - crash[v]);
+		}
+		for (int v : cut.lengthen) {
+			limit = Math.min(limit, normal[v] - dur[v]);
+		}
+		int lo = 0;
+		int hi = limit + 1;
+		int days = limit;
+		int applied = 0;
+		while (true) {
+			change(cut, inc, dur, days - applied);
+			applied = days;
+			if (inc.getDuration() == d - days) {
+				lo = days;
+			} else {
+				hi = days;
+			}
+			if (hi - lo <= 1) {
+				change(cut, inc, dur, lo - applied);
+				return lo;
+			}
+			days = (lo + hi) >>> 1;
+		}
+	}
+
+	/**
+	 * Shortens the activities of a cut by some days and lengthens the ones it
+	 * gives days back to, or the reverse for negative days.
+	 */
+	private static void change(Cut cut, IncrementalSchedule inc, int[] dur, int days) {
+		if (days == 0) {
+			return;
+		}
+		for (int v : cut.shorten) {
+			dur[v] -= days;
+			inc.setDuration(v, dur[v]);
+		}
+		for (int v : cut.lengthen) {
+			dur[v] += days;
+			inc.setDuration(v, dur[v]);
+		}
+	}
+
+	private String[] names(int[] nodes) {
+		String[] names = new String[nodes.length];
+		for (int i = 0; i < nodes.length; i++) {
+			names[i] = schedule.symbols().name(nodes[i]);
+		}
+		return names;
+	}
+
+	/**
+	 * The cheapest cut of the critical activities, found as a maximum flow with
+	 * lower bounds. Each critical activity v is an arc from 2v to 2v + 1, whose
+	 * capacity is the cost of crashing it for a day, or unbounded if it can't be
+	 * crashed, and whose lower bound is the cost given back by un-crashing it for
+	 * a day, if it was crashed. Each critical edge is an unbounded arc from the
+	 * end of one activity's arc to the start of the next. A cut's cost is the
+	 * capacities it crosses forwards less the lower bounds it crosses backwards,
+	 * so the cut left by the maximum flow is the cheapest set of activities to
+	 * shorten and lengthen.
+	 */
+	private class Cut {
+		private final int nodes;
+		private final int ss;// the super source and sink that satisfy the lower bounds
+		private final int tt;
+		private int[] head;
+		private int[] next = new int[64];
+		private int[] to = new int[64];
+		private double[] cap = new double[64];
+		private int arcs;
+		private final double[] excess;
+		private final int[] level;
+		private final int[] iter;
+		private final int[] queue;
+		private final int[] path;
+
+		int[] shorten;
+		int[] lengthen;
+		double cost;
+
+		Cut(int n) {
+			nodes = 2 * n + 2;
+			ss = 2 * n;
+			tt = 2 * n + 1;
+			head = new int[nodes];
+			excess = new double[nodes];
+			level = new int[nodes];
+			iter = new int[nodes];
+			queue = new int[nodes];
+			path = new int[nodes];
+		}
+
+		/**
+		 * Finds the cheapest cut of the critical activities.
+		 *
+		 * @param giveBack true to let the cut give days back to crashed activities
+		 * @return false if every cut crosses an activity that can't be crashed
+		 */
+		boolean find(CsrGraph graph, IncrementalSchedule inc, boolean[] critical, int[] dur, int s, int f,
+				boolean giveBack) {
+			int n = graph.size();
+			Arrays.fill(head, -1);
+			Arrays.fill(excess, 0);
+			arcs = 0;
+
+			/* Unbounded is anything more than every finite capacity put together */
+			double big = 1;
+			for (int v = 0; v < n; v++) {
+				if (critical[v]) {
+					big += slope[v];
+				}
+			}
+			big *= 2;
+
+			for (int v = 0; v < n; v++) {
+				if (!critical[v]) {
+					continue;
+				}
+				double upper = dur[v] > crash[v] ? slope[v] : big;
+				double lower = giveBack && dur[v] < normal[v] ? slope[v] : 0;
+				addArc(2 * v, 2 * v + 1, upper - lower);
+				excess[2 * v + 1] += lower;
+				excess[2 * v] -= lower;
+				for (int e = graph.outStart(v); e < graph.outEnd(v); e++) {
+					int t = graph.outTarget(e);
+					if (critical[t] && inc.getEC(v) + dur[t] == inc.getEC(t)) {
+						addArc(2 * v + 1, 2 * t, big);
+					}
+				}
+			}
+
+			/* Find a flow that meets every lower bound, circulating through F back to S */
+			int back = arcs;
+			addArc(2 * f + 1, 2 * s, big * n);
+			double need = 0;
+			int supply = arcs;
+			for (int x = 0; x < 2 * n; x++) {
+				if (excess[x] > 0) {
+					addArc(ss, x, excess[x]);
+					need += excess[x];
+				} else if (excess[x] < 0) {
+					addArc(x, tt, -excess[x]);
+				}
+			}
+			if (need > 0) {
+				maxFlow(ss, tt);
+				if (!satisfied()) {
+					/* The schedule isn't the cheapest for its duration, so cut without giving days back */
+					return find(graph, inc, critical, dur, s, f, false);
+				}
+			}
+			for (int a = supply; a < arcs; a++) {
+				cap[a] = 0;
+			}
+			cap[back] = 0;
+			cap[back ^ 1] = 0;
+
+			/* Then push as much more as it can from S to F; what S still reaches is the cut */
+			if (maxFlow(2 * s, 2 * f + 1) >= big / 2) {
+				return false;
+			}
+			levels(2 * s);
+			return collect(critical, dur, n, giveBack);
+		}
+
+		/**
+		 * @return true if the flow from the super source filled every arc out of it
+		 */
+		private boolean satisfied() {
+			for (int a = head[ss]; a != -1; a = next[a]) {
+				if (cap[a] > EPS * (1 + cap[a ^ 1])) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Reads the activities the cut crosses forwards, which are shortened, and
+		 * the crashed ones it crosses backwards, which are lengthened.
+		 */
+		private boolean collect(boolean[] critical, int[] dur, int n, boolean giveBack) {
+			int[] fwd = new int[n];
+			int[] bwd = new int[n];
+			int nf = 0;
+			int nb = 0;
+			cost = 0;
+			for (int v = 0; v < n; v++) {
+				if (!critical[v]) {
+					continue;
+				}
+				boolean in = level[2 * v] >= 0;
+				boolean out = level[2 * v + 1] >= 0;
+				if (in && !out) {
+					if (dur[v] <= crash[v]) {
+						return false;
+					}
+					fwd[nf++] = v;
+					cost += slope[v];
+				} else if (!in && out && giveBack && dur[v] < normal[v]) {
+					bwd[nb++] = v;
+					cost -= slope[v];
+				}
+			}
+			shorten = Arrays.copyOf(fwd, nf);
+			lengthen = Arrays.copyOf(bwd, nb);
+			return nf > 0;
+		}
+
+		private void addArc(int u, int v, double c) {
+			if (arcs + 2 > to.length) {
+				int cap2 = to.length * 2;
+				next = Arrays.copyOf(next, cap2);
+				to = Arrays.copyOf(to, cap2);
+				cap = Arrays.copyOf(cap, cap2);
+			}
+			to[arcs] = v;
+			cap[arcs] = c;
+			next[arcs] = head[u];
+			head[u] = arcs++;
+			to[arcs] = u;
+			cap[arcs] = 0;
+			next[arcs] = head[v];
+			head[v] = arcs++;
+		}
+
+		/**
+		 * Dinic's algorithm: augments along shortest paths of the residual graph,
+		 * a level graph at a time.
+		 *
+		 * @return the flow pushed
+		 */
+		private double maxFlow(int src, int sink) {
+			double flow = 0;
+			while (true) {
+				levels(src);
+				if (level[sink] < 0) {
+					return flow;
+				}
+				for (int x = 0; x < nodes; x++) {
+					iter[x] = head[x];
+				}
+				double pushed;
+				while ((pushed = augment(src, sink)) > EPS) {
+					flow += pushed;
+				}
+			}
+		}
+
+		/**
+		 * Labels every node with its distance from src over arcs with room left,
+		 * and unreached nodes with -1.
+		 */
+		private void levels(int src) {
+			Arrays.fill(level, -1);
+			level[src] = 0;
+			int qh = 0;
+			int qt = 0;
+			queue[qt++] = src;
+			while (qh < qt) {
+				int x = queue[qh++];
+				for (int a = head[x]; a != -1; a = next[a]) {
+					if (cap[a] > EPS && level[to[a]] < 0) {
+						level[to[a]] = level[x] + 1;
+						queue[qt++] = to[a];
+					}
+				}
+			}
+		}
+
+		/**
+		 * Pushes flow along one path of the level graph, walking each node's arcs
+		 * from where the last path left off. The path is kept on an explicit stack,
+		 * since it can be as long as the schedule.
+		 *
+		 * @return the flow pushed, or 0 if the level graph has no path left
+		 */
+		private double augment(int src, int sink) {
+			int depth = 0;
+			int x = src;
+			while (x != sink) {
+				int a = iter[x];
+				while (a != -1 && !(cap[a] > EPS && level[to[a]] == level[x] + 1)) {
+					a = next[a];
+				}
+				iter[x] = a;
+				if (a != -1) {
+					path[depth++] = a;
+					x = to[a];
+				} else if (depth == 0) {
+					return 0;
+				} else {
+					level[x] = -1;// a dead end, skipped from now on
+					x = to[path[--depth] ^ 1];
+					iter[x] = next[iter[x]];
+				}
+			}
+			double d = Double.POSITIVE_INFINITY;
+			for (int i = 0; i < depth; i++) {
+				d = Math.min(d, cap[path[i]]);
+			}
+			for (int i = 0; i < depth; i++) {
+				cap[path[i]] -= d;
+				cap[path[i] ^ 1] += d;
+			}
+			return d;
+		}
+	}
+
+	/**
+	 * One cut, applied for one or more days.
+	 */
+	public static class Step {
+		private final int duration;
+		private final double cost;
+		private final String[] shortened;
+		private final String[] lengthened;
+		private final int days;
+
+		Step(int duration, double cost, String[] shortened, String[] lengthened, int days) {
+			this.duration = duration;
+			this.cost = cost;
+			this.shortened = shortened;
+			this.lengthened = lengthened;
+			this.days = days;
+		}
+
+		/**
+		 * @return the project duration after the step
+		 */
+		public int getDuration() {
+			return duration;
+		}
+
+		/**
+		 * @return the total cost of crashing, after the step
+		 */
+		public double getCost() {
+			return cost;
+		}
+
+		/**
+		 * @return the number of days each activity was shortened or lengthened
+		 */
+		public int getDays() {
+			return days;
+		}
+
+		/**
+		 * @return the names of the activities the step shortened
+		 */
+		public String[] getShortened() {
+			return shortened.clone();
+		}
+
+		/**
+		 * @return the names of the crashed activities the step gave days back to
+		 */
+		public String[] getLengthened() {
+			return lengthened.clone();
+		}
+	}
+
+	/**
+	 * The steps of a crashing run, and the durations it ended with.
+	 */
+	public class Result {
+		private final int start;
+		private final int duration;
+		private final double cost;
+		private final List<Step> steps;
+		private final int[] dur;
+
+		Result(int start, int duration, double cost, List<Step> steps, int[] dur) {
+			this.start = start;
+			this.duration = duration;
+			this.cost = cost;
+			this.steps = steps;
+			this.dur = dur;
+		}
+
+		/**
+		 * @return the project duration before crashing
+		 */
+		public int getStart() {
+			return start;
+		}
+
+		/**
+		 * @return the project duration after crashing
+		 */
+		public int getDuration() {
+			return duration;
+		}
+
+		/**
+		 * @return the total cost of crashing
+		 */
+		public double getCost() {
+			return cost;
+		}
+
+		/**
+		 * @return the steps, in the order they were taken
+		 */
+		public List<Step> steps() {
+			return steps;
+		}
+
+		/**
+		 * @return the names of the activities that were crashed, in topological
+		 *         order
+		 */
+		public List<String> crashed() {
+			ArrayList<String> names = new ArrayList<String>();
+			for (int v : schedule.order()) {
+				if (dur[v] < normal[v]) {
+					names.add(schedule.symbols().name(v));
+				}
+			}
+			return names;
+		}
+
+		/**
+		 * @param name the name of an activity
+		 * @return the activity's duration after crashing
+		 */
+		public int durationOf(String name) {
+			return dur[id(name)];
+		}
+
+		/**
+		 * @param name the name of an activity
+		 * @return the activity's normal duration
+		 */
+		public int normalOf(String name) {
+			return normal[id(name)];
+		}
+
+		/**
+		 * @param name the name of an activity
+		 * @return what crashing the activity costs
+		 */
+		public double costOf(String name) {
+			int v = id(name);
+			return slope[v] * (normal[v] - dur[v]);
+		}
+
+		private int id(String name) {
+			int v = schedule.symbols().id(name);
+			if (v < 0) {
+				throw new IllegalArgumentException("no node named " + name);
+			}
+			return v;
+		}
+	}
+}
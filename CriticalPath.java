@@ -1,19 +1,31 @@
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
-import java.util.Scanner;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 
 /**
  * Driver program that discovers the activity nodes, EC, LC, and slack times of
- * an adjacency matrix in a text file.
+ * an adjacency matrix in a text file. The work is done by a CriticalPathEngine;
+ * this class reads the command line and displays the result.
  * 
  * @author Aaron Goin
  */
 public class CriticalPath {
-	private static ArrayList<PredsAndAdjs> pA;
-	private static String horiz;
-	private static String primes = "";
-	private static int[][] txtTwoD;
+	private static final int MAX_PATHS = 1000;// the most critical paths displayed by -a
+	private static final long SEED = 1;// trials are repeatable from run to run
+	private static final int PLANS = 64;// the most network structures -d keeps plans for
+	private static final double[] PERCENTILES = { 5, 10, 25, 50, 75, 90, 95, 99 };
 
 	/**
 	 * Uses relevant methods to display topological information on the console.
@@ -21,550 +33,596 @@ public class CriticalPath {
 	 * @param args the command line arguments used when running a program
 	 */
 	public static void main(String[] args) {
-		if (args.length != 1) {
-			usage();
-		}
-		scanAndAssignNodes(args[0]);
-		sortTopo();
-		postTopoSort();
-		discoverPrimeNodes();
-		primeWorkOne();
-		primeWorkTwo();
-		discoverECVals();
-		discoverLCVals();
-		output();
-
-	}// end of main
-
-	/**
-	 * A usage statement is displayed when the args length isn't one, or an improper
-	 * file format is used. The program exits as a result.
-	 */
-	private static void usage() {
-		System.out.println("Usage: java CriticalPath <file name>\n");
-		System.out.println("file name (required): the name of a file containing a correctly "
-				+ "formatted and evenly spaced\nadjacency-matrix, where the axes are equivalent "
-				+ "and have all of the nodes, -1 represents\nan edge that doesnt exist, and all "
-				+ "other values represent non-negative edge weights between\nexisting nodes. "
-				+ "All values in the S column must be -1, and all values in the F row must be\n-1, "
-				+ "and all values in the F column must be -1 or 0. All non-negative numbers in "
-				+ "rows should\nbe next to each other, no node should point to a previous node,\n"
-				+ "and each node must only be one letter.");
-		System.exit(1);
-	}
-
-	/**
-	 * Parses information from a text file, and adds non-prime nodes with respective
-	 * predecessor, and adjacency values. This also initializes the ArrayList that
-	 * stores all of the nodes, and puts the initial non-prime node values in the
-	 * list.
-	 * 
-	 * @param filename the name of the text file that contains an adjacency matrix
-	 */
-	private static void scanAndAssignNodes(String filename) {
-		try {
-			Scanner s = new Scanner(new File(filename));
-			if (!s.hasNextLine()) {
-				usage();
-			}
-			horiz = s.nextLine();
-			horiz = horiz.replaceAll("\\s+", "");
-
-			String vert = "";
-			ArrayList<Integer> tempG = new ArrayList<Integer>();
-			int theDimen = -1;
-			while (s.hasNextLine()) {
-				String currLine = s.nextLine();
-				if (currLine.equals("")) {
-					if (s.hasNext()) {
-						usage();
-					} else {
-						break;
-					}
+		boolean edges = false;
+		boolean binary = false;
+		boolean parallel = false;
+		boolean profile = false;
+		boolean offHeap = false;
+		boolean rolling = false;
+		String mapDir = null;
+		String serveAt = null;
+		boolean batch = false;
+		int limit = Runtime.getRuntime().availableProcessors();
+		String outDir = null;
+		String compileTo = null;
+		char format = 't';
+		boolean critical = false;
+		int topK = 0;
+		int under = 0;
+		String writeTo = null;
+		boolean allCritical = false;
+		int longest = 0;
+		String estimates = null;
+		int trials = 10000;
+		String costs = null;
+		int days = 0;
+		String filename = null;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-e")) {
+				edges = true;
+			} else if (args[i].equals("-b")) {
+				binary = true;
+			} else if (args[i].equals("-p")) {
+				parallel = true;
+			} else if (args[i].equals("--profile")) {
+				profile = true;
+			} else if (args[i].equals("-x")) {
+				offHeap = true;
+			} else if (args[i].equals("-r")) {
+				rolling = true;
+			} else if (args[i].equals("-u") && i + 1 < args.length) {
+				mapDir = args[++i];
+			} else if (args[i].equals("-s") && i + 1 < args.length) {
+				serveAt = args[++i];
+			} else if (args[i].equals("-d")) {
+				batch = true;
+			} else if (args[i].equals("-z")) {
+				critical = true;
+			} else if (args[i].equals("-a")) {
+				allCritical = true;
+			} else if (args[i].equals("-f") && i + 1 < args.length) {
+				String f = args[++i];
+				if (f.equals("table") || f.equals("csv") || f.equals("json")) {
+					format = f.charAt(0);
+				} else {
+					usage();
 				}
-				Scanner t = new Scanner(currLine);
-				String nxt = t.next();
-				if (nxt.length() > 1) {
+			} else if (args[i].equals("-w") && i + 1 < args.length) {
+				writeTo = args[++i];
+			} else if (args[i].equals("-m") && i + 1 < args.length) {
+				estimates = args[++i];
+			} else if (args[i].equals("-t") && i + 1 < args.length) {
+				try {
+					trials = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException e) {
 					usage();
 				}
-				vert += nxt;
-				int currDimen = 0;
-				while (t.hasNextInt()) {
-					int next = t.nextInt();
-					if (next < -1) {
-						usage();
-					}
-					tempG.add(next);
-					currDimen++;
+			} else if (args[i].equals("-y") && i + 1 < args.length) {
+				costs = args[++i];
+			} else if (args[i].equals("-n") && i + 1 < args.length) {
+				try {
+					days = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException e) {
+					usage();
 				}
-				t.close();
-				tempG.add(-2);
-				if (theDimen == -1) {
-					theDimen = currDimen;
-				} else {
-					if (theDimen != currDimen) {
-						usage();
-					}
+			} else if (args[i].equals("-c") && i + 1 < args.length) {
+				compileTo = args[++i];
+			} else if (args[i].equals("-o") && i + 1 < args.length) {
+				outDir = args[++i];
+			} else if (args[i].equals("-j") && i + 1 < args.length) {
+				try {
+					limit = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException e) {
+					usage();
 				}
-			} // end of scanning
-			s.close();
-
-			if (horiz.length() != (tempG.indexOf(-2))) {
+			} else if (args[i].equals("-k") && i + 1 < args.length) {
+				try {
+					topK = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException e) {
+					usage();
+				}
+			} else if (args[i].equals("-q") && i + 1 < args.length) {
+				try {
+					under = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException e) {
+					usage();
+				}
+				if (under < 1) {
+					usage();
+				}
+			} else if (args[i].equals("-l") && i + 1 < args.length) {
+				try {
+					longest = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException e) {
+					usage();
+				}
+			} else if (filename == null) {
+				filename = args[i];
+			} else {
 				usage();
 			}
-
-			if (!horiz.equals(vert) || !horiz.contains("S") || !horiz.contains("F")) {
+		}
+		if (serveAt != null) {
+			if (filename != null || edges || binary || batch || compileTo != null || writeTo != null || offHeap
+					|| rolling || allCritical || longest > 0 || estimates != null || costs != null || limit < 1
+					|| topK < 0 || under > 0) {
 				usage();
 			}
+			serve(new CriticalPathEngine(parallel, new PlanCache(PLANS)), format, critical, topK, limit, serveAt);
+			return;
+		}
+		if (filename == null || (edges && binary) || limit < 1 || topK < 0 || longest < 0 || trials < 1 || days < 0
+				|| (costs == null && days > 0)
+				|| (costs != null && (batch || compileTo != null || offHeap || rolling))
+				|| (batch && (compileTo != null || allCritical || longest > 0 || estimates != null))
+				|| (!batch && outDir != null) || (compileTo != null && estimates != null)
+				|| (writeTo != null && (batch || compileTo != null)) || (mapDir != null && !offHeap)
+				|| (offHeap && (!edges || parallel || batch || compileTo != null || allCritical || longest > 0
+						|| estimates != null))
+				|| (rolling && (binary || offHeap || parallel || batch || compileTo != null || allCritical
+						|| longest > 0 || estimates != null || topK > 0 || under > 0))) {
+			usage();
+		}
 
-			tempG.removeIf(n -> (n == -2));// remove all -2s
-
-			/* Initialize predsAndAdjs list and add adj vals */
-			pA = new ArrayList<PredsAndAdjs>();
-			txtTwoD = new int[horiz.length()][horiz.length()];
-			for (int i = 0; i < horiz.length(); i++) {
-				String node = Character.toString(horiz.charAt(i));
-				pA.add(new PredsAndAdjs(node));
-
-				for (int j = 0; j < horiz.length(); j++) {
-					int pT = tempG.remove(0);
-					txtTwoD[i][j] = pT;
-					/* Add each adj val */
-					if (pT > -1) {
-						pA.get(i).addAdj(Character.toString(horiz.charAt(j)));
-						pA.get(i).addAEdge(pT);
-					}
-				}
+		Profiler profiler = profile ? new Profiler() : Profiler.events();
+		ResultWriter writer = new ResultWriter(format, critical, topK, under);
+		if (batch) {
+			PlanCache plans = new PlanCache(PLANS);
+			runBatch(new BatchRunner(new CriticalPathEngine(parallel, plans, profiler), binary ? 'b' : edges ? 'e' : 'm',
+					writer, limit, outDir == null ? null : new File(outDir)), plans, filename);
+			if (profile) {
+				profiler.print(System.out);
 			}
-
-			checkTxtVals();
-
-			/* Add pred vals */
-			for (int i = 0; i < horiz.length(); i++) {
-				PredsAndAdjs n = pA.get(i);
-				for (int j = 0; j < horiz.length(); j++) {
-					if (txtTwoD[j][i] > -1) {
-						n.addPred(Character.toString(horiz.charAt(j)));
-						n.addPEdge(txtTwoD[j][i]);
-					}
-				}
+			return;
+		}
+		if (rolling) {
+			runRolling(writer, profiler, filename, writeTo);
+			if (profile) {
+				profiler.print(System.out);
 			}
-
-		} catch (FileNotFoundException e) {
+			return;
+		}
+		if (offHeap) {
+			File dir = new File(mapDir == null ? System.getProperty("java.io.tmpdir") : mapDir);
+			runOffHeap(writer, profiler, filename, dir, writeTo);
+			if (profile) {
+				profiler.print(System.out);
+			}
+			return;
+		}
+		CriticalPathEngine engine = new CriticalPathEngine(parallel, null, profiler);
+		Schedule schedule = null;
+		try {
+			if (binary) {
+				schedule = engine.loadCompiled(filename);
+			} else if (edges) {
+				schedule = engine.loadEdgeList(filename);
+			} else {
+				schedule = engine.loadMatrix(filename);
+			}
+		} catch (ScheduleException e) {
+			System.out.println("Improper format in " + filename + ": " + e.getMessage() + "\n");
+			profiler.print(System.out);
+			usage();
+		} catch (IOException e) {
 			System.out.println("Unable to load " + filename);
 			System.out.println(e.toString() + "\n");
+			profiler.print(System.out);
 			usage();
 		}
-	}// end of scan
 
-	/**
-	 * Determines if text file has proper S and F values that enable a topological
-	 * sequence.
-	 */
-	private static void checkTxtVals() {
-		boolean fCZero = false;
-		boolean sCSomething = false;
-		for (int i = 0; i < txtTwoD.length; i++) {
-			int nonNeg = -2;
-			for (int j = 0; j < txtTwoD.length; j++) {
-				if (horiz.charAt(i) == 'S' && !sCSomething) {
-					if (txtTwoD[i][j] > -1) {
-						sCSomething = true;
-					}
-				}
-
-				/* Check that each non neg value in a column is equal (adjs) */
-				if (txtTwoD[j][i] > -1) {
-					if (nonNeg != -2 && nonNeg != txtTwoD[j][i]) {
-						usage();
-					}
-					nonNeg = txtTwoD[j][i];
-				}
-
-				/* Verify S column is -1 */
-				if (horiz.charAt(j) == 'S') {
-					if (txtTwoD[i][j] > -1) {
-						usage();
-					}
+		int n = schedule.graph().size();
+		int m = schedule.graph().edgeCount();
+		if (compileTo != null) {
+			compileGraph(engine, schedule, compileTo);
+		} else {
+			ScheduleResult result = engine.compute(schedule);
+			try (Profiler.Span span = profiler.start("output")) {
+				output(writer, result, writeTo);
+				span.end(n, m);
+			}
+			if (allCritical || longest > 0) {
+				try (Profiler.Span span = profiler.start("paths")) {
+					paths(new LongestPaths(result), allCritical, longest);
+					span.end(n, m);
 				}
-
-				/* and F row is -1 */
-				if (horiz.charAt(j) == 'F') {
-					if (txtTwoD[j][i] > -1) {
-						usage();
-					}
-
-					/* Check that F column has at least one 0 */
-					if (!fCZero) {
-						if (txtTwoD[i][j] == 0) {
-							fCZero = true;
-						}
-					}
+			}
+			if (estimates != null) {
+				try (Profiler.Span span = profiler.start("simulate")) {
+					simulate(schedule, estimates, trials);
+					span.end(n, m);
 				}
-
-			} // inner for loop
-			if (horiz.charAt(i) == 'S') {
-				/* Check that the S row has at least 1 non-negative value */
-				if (!sCSomething) {
-					usage();
+			}
+			if (costs != null) {
+				try (Profiler.Span span = profiler.start("crash")) {
+					crash(schedule, costs, days);
+					span.end(n, m);
 				}
 			}
-
-		} // outer for loop
-		if (!fCZero) {
-			usage();
 		}
-	}// end of method
-
-	/**
-	 * Assigns start and end times to nodes, as in a DFS search.
-	 */
-	private static void sortTopo() {
-		if (!pA.get(0).getNode().equals("S")) {
-			PredsAndAdjs s = pA.remove(getNodeIdxByString("S"));
-			pA.add(0, s);
+		if (profile) {
+			profiler.print(System.out);
 		}
 
-		if (!pA.get(pA.size() - 1).getNode().equals("F")) {
-			PredsAndAdjs f = pA.remove(getNodeIdxByString("F"));
-			pA.add(f);
-		}
-
-		int idx = 0;
-		int sFTnum = 1;
-
-		boolean done = false;
-		while (!done) {
-			PredsAndAdjs curr = pA.get(idx);
-
-			if (curr.getStartT() == -1) {
-				curr.setStartT(sFTnum++);
-			} else {
-				if (!hasANonVisitAdj(curr)) {
-					curr.setEndT(sFTnum++);
-				}
-			}
-
-			if (curr.getNode().equals("S") && curr.getEndT() > -1) {
-				done = true;
-				break;
-			}
-
-			int sI = nextStartTIdx(curr);
-			if (sI > -1) {
-				idx = sI;
-			} else {
-				idx = nextEndTIdx(curr);
-			}
-
-			if (idx < 0) {
-				usage();
-			}
-
-		} // end of outer while loop
-
-	}
+	}// end of main
 
 	/**
-	 * @param n the String value of the node
-	 * @return the index of the node value in the array of all node values
+	 * A usage statement is displayed when the args aren't a file name with
+	 * optional flags, or an improper file format is used. The program exits as a
+	 * result.
 	 */
-	private static int getNodeIdxByString(String n) {
-		for (PredsAndAdjs node : pA) {
-			if (node.getNode().equals(n)) {
-				return pA.indexOf(node);
-			}
-		}
-		return -1;
+	private static void usage() {
+		System.out.println("Usage: java CriticalPath [-e | -b] [-c <graph file>] [-p] [--profile] "
+				+ "[-f <table | csv | json>] [-z]\n       [-k <count>] [-q <slack>] [-w <output file>] "
+				+ "[-m <estimates file> [-t <trials>]]\n       [-y <costs file> [-n <days>]] [-d [-j <limit>] "
+				+ "[-o <dir>]] [-x [-u <dir>]] [-r] <file name>\n   or: java CriticalPath -s <port | socket file> "
+				+ "[-j <threads>] [-p]\n       [-f <table | csv | json>] [-z] [-k <count>]\n");
+		System.out.println("file name (required): the name of a file containing a correctly "
+				+ "formatted and evenly spaced\nadjacency-matrix, where the axes are equivalent "
+				+ "and have all of the nodes, -1 represents\nan edge that doesnt exist, and all "
+				+ "other values represent non-negative edge weights between\nexisting nodes. "
+				+ "All values in the S column must be -1, and all values in the F row must be\n-1, "
+				+ "and all values in the F column must be -1 or 0. All non-negative numbers in "
+				+ "rows should\nbe next to each other, no node should point to a previous node,\n"
+				+ "and node names are separated by spaces.\n");
+		System.out.println("-e (optional): the file is an edge list instead, with one \"from to duration\" "
+				+ "line per edge.\nThe same S and F rules apply, and every edge into a node must have "
+				+ "the same duration.\n");
+		System.out.println("-x (optional): with -e, keeps the graph and its EC and LC values off the heap, for "
+				+ "graphs with\nmore edges than the heap holds. They are mapped from temporary files in the system's "
+				+ "temporary\ndirectory, or in dir with -u <dir>.\n");
+		System.out.println("-r (optional): the file is an edge list, or - for standard input, that is computed as "
+				+ "it's read,\nfor schedules that keep growing. Every edge into a node must come before the edges out "
+				+ "of it.\nAn edge out of F redefines F: the nodes before it are written and dropped from memory, "
+				+ "and\nthe rest of the schedule starts at the old F.\n");
+		System.out.println("-s <port | socket file>: serves schedules on a loopback TCP port or a Unix-domain socket "
+				+ "until\nstopped, instead of computing a file. Each request is \"COMPUTE matrix|edges "
+				+ "[table|csv|json]\",\nthe lines of the file, and a line that is only END, and is answered "
+				+ "with \"OK <bytes>\" and the\nnodes, or \"ERROR <message>\". STATS answers with request "
+				+ "counts, throughput, and latency\npercentiles, and QUIT closes the connection. -j <threads> "
+				+ "sets how many requests are\ncomputed at once (default: one per core). At most "
+				+ ScheduleServer.MAX_CONNECTIONS + " connections are open at once.\n");
+		System.out.println("-b (optional): the file is a graph file written with -c, which is loaded "
+				+ "without being\nparsed again. Its bounds, sequence, and edges are checked, so a corrupt file "
+				+ "is reported.\n");
+		System.out.println("-c <graph file> (optional): checks the file and compiles it into a graph "
+				+ "file instead of\ndisplaying its nodes.\n");
+		System.out.println("-p (optional): discovers EC and LC values a dependency level at a time, "
+				+ "splitting wide\nlevels across all cores, or a project at a time when the file joins "
+				+ "independent projects\nat S and F.\n");
+		System.out.println("--profile (optional): displays the time, allocated bytes, and nodes and edges of each "
+				+ "phase\nafter the run. Phases are also recorded as CriticalPath.Phase events in any JFR "
+				+ "recording.\n");
+		System.out.println("-d (optional): the file name is a directory, or a file listing one file per "
+				+ "line, and every\nfile is computed on its own thread. Each table is written to the "
+				+ "file's name plus .out,\nand a summary of each file is displayed. -j <limit> sets how "
+				+ "many files are computed at\nonce (default: one per core), and -o <dir> sets where "
+				+ "the tables are written.\n");
+		System.out.println("-f <table | csv | json> (optional): displays the nodes as the table (default), "
+				+ "as CSV with a\nnode,ec,lc,slack header, or as JSON Lines with one object per node.\n");
+		System.out.println("-z (optional): only displays critical nodes, which have no slack time, and -k <count> "
+				+ "only\ndisplays the count nodes with the least slack time, least first. -q <slack> only displays "
+				+ "nodes\nwith less than slack slack time, least first.\n");
+		System.out.println("-w <output file> (optional): writes the nodes to a file instead of the console.\n");
+		System.out.println("-a (optional): also displays every critical path from S to F, up to " + MAX_PATHS
+				+ ", and -l <count>\nalso displays the count longest paths from S to F, longest first.\n");
+		System.out.println("-m <estimates file> (optional): also simulates the schedule with one \"name optimistic "
+				+ "likely\npessimistic\" duration per line, displaying percentiles of the completion time and how "
+				+ "often\neach node was critical. -t <trials> sets the number of trials (default: 10000).\n");
+		System.out.println("-y <costs file> (optional): also crashes the schedule at the least cost, with one \"name "
+				+ "normal\ncrash normalCost crashCost\" line per activity that can be shortened, displaying each step "
+				+ "and\nthe crashed activities. -n <days> sets the most days taken off (default: as many as it can).");
+		System.exit(1);
 	}
 
 	/**
-	 * Finds the next possible node index that can be assigned a "start" value in a
-	 * DFS search.
+	 * Writes the checked graph, its node names, and its topological sequence to a
+	 * compiled graph file.
 	 * 
-	 * @param hasAdj a node that already has a start value, where possible nodes are
-	 *               searched from
-	 * @return the index of the node that can be assigned a start value
+	 * @param engine   the engine that loaded the schedule
+	 * @param schedule the checked schedule
+	 * @param filename the name of the graph file to write
 	 */
-	private static int nextStartTIdx(PredsAndAdjs hasAdj) {
-		int idx = -1;
-		int aIdx = 0;
-		int aSize = hasAdj.getAEdgesSize();
-		while (aIdx < aSize) {
-			PredsAndAdjs poss = getFormerPAByString(hasAdj.getAdj(aIdx));
-			if (poss.getStartT() == -1) {
-				idx = getNodeIdxByString(hasAdj.getAdj(aIdx));
-				break;
-			} else {
-				aIdx++;
-			}
-		} // end of inner while loop
-
-		return idx;
+	private static void compileGraph(CriticalPathEngine engine, Schedule schedule, String filename) {
+		try {
+			engine.compile(schedule, filename);
+			System.out.println("Compiled " + schedule.graph().size() + " nodes and "
+					+ schedule.graph().edgeCount() + " edges into " + filename);
+		} catch (IOException e) {
+			System.out.println("Unable to write " + filename);
+			System.out.println(e.toString() + "\n");
+			usage();
+		}
 	}
 
 	/**
-	 * Finds the next possible node index that can be assigned a "end" value in a
-	 * DFS search. Returns the node itself if no possible nodes exist.
+	 * Serves schedules on a local socket until the program is stopped.
 	 * 
-	 * @param hasAdj a node where possible nodes are searched from
-	 * @return the index of the node that can be assigned an end value
+	 * @param engine   the engine every request is computed by
+	 * @param format   the format of replies that don't name one
+	 * @param critical true to only reply with critical nodes
+	 * @param topK     the most nodes in a reply, or 0 for every node
+	 * @param threads  the number of requests computed at once
+	 * @param where    a port on the loopback address, or the path of a
+	 *                 Unix-domain socket
 	 */
-	private static int nextEndTIdx(PredsAndAdjs hasPred) {
-		if (hasPred.getEndT() < 0) {
-			return getNodeIdxByString(hasPred.getNode());
+	private static void serve(CriticalPathEngine engine, char format, boolean critical, int topK, int threads,
+			String where) {
+		SocketAddress address;
+		if (where.matches("\\d+")) {
+			address = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(where));
+		} else {
+			address = UnixDomainSocketAddress.of(where);
 		}
-
-		int idx = -1;
-		int pIdx = 0;
-		int pSize = hasPred.getPEdgesSize();
-		int maxST = -1;
-
-		while (pIdx < pSize) {
-			PredsAndAdjs poss = getFormerPAByString(hasPred.getPred(pIdx));
-			if (poss.getStartT() > maxST) {
-				idx = getNodeIdxByString(hasPred.getPred(pIdx));
-				maxST = poss.getStartT();
-			}
-			pIdx++;
+		try {
+			ScheduleServer server = new ScheduleServer(engine, format, critical, topK, threads, address);
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				try {
+					server.close();
+				} catch (IOException e) {
+					// the program is ending anyway
+				}
+			}));
+			System.out.println("Listening on " + server.address());
+			server.serve();
+		} catch (IOException | IllegalArgumentException e) {
+			System.out.println("Unable to listen on " + where);
+			System.out.println(e.toString() + "\n");
+			usage();
 		}
-
-		return idx;
 	}
 
 	/**
-	 * Determines if a node has an adjacent value that hasn't been visited.
+	 * Computes an edge list as it's read, writing the nodes before F each time F
+	 * is redefined.
 	 * 
-	 * @param q the node value that is in question
-	 * @return true if the node has an adjacent value that hasn't been visited,
-	 *         false if not
+	 * @param writer   the writer set to the chosen format and rows
+	 * @param profiler the profiler the run is recorded by
+	 * @param filename the name of the edge list, or - for standard input
+	 * @param writeTo  the name of the file to write, or null for the console
 	 */
-	private static boolean hasANonVisitAdj(PredsAndAdjs q) {
-		for (String a : q.getAdjs()) {
-			if (getFormerPAByString(a).getStartT() < 0) {
-				return true;
+	private static void runRolling(ResultWriter writer, Profiler profiler, String filename, String writeTo) {
+		Profiler.Span span = profiler.start("rolling");
+		RollingSchedule schedule;
+		WritableByteChannel out = Channels.newChannel(System.out);
+		try (Reader in = filename.equals("-") ? new InputStreamReader(System.in) : new FileReader(filename)) {
+			if (writeTo != null) {
+				out = FileChannel.open(Paths.get(writeTo), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING);
 			}
-		}
-		return false;
-	}
-
-	/**
-	 * Sorts the list of node values in a topological sequence. This is done by
-	 * their discovered end times in a DFS search. This method works in a reverse
-	 * order, excluding the S and F nodes.
-	 */
-	private static void postTopoSort() {
-		int nextIdx = pA.size() - 2;
-		int mIdx;
-		while (nextIdx > 0) {
-			mIdx = findNextFOI(nextIdx);
-			PredsAndAdjs n = pA.remove(mIdx);
-			pA.add(nextIdx--, n);
-		}
-	}
-
-	/**
-	 * @param nextIdx the index that hasn't been sorted yet
-	 * @return the index of the node that has the smallest end time value
-	 */
-	private static int findNextFOI(int nextIdx) {
-		int minFT = Integer.MAX_VALUE;
-		int retI = -1;
-		for (int i = 1; i < nextIdx + 1; i++) {
-			if (pA.get(i).getEndT() < minFT) {
-				minFT = pA.get(i).getEndT();
-				retI = i;
+			try (ResultWriter.Appender rows = writer.appender(out)) {
+				schedule = new RollingSchedule(rows::append);
+				schedule.read(in);
+			} finally {
+				if (writeTo != null) {
+					out.close();
+				}
 			}
+			System.out.flush();
+			span.end((int) Math.min(schedule.written(), Integer.MAX_VALUE),
+					(int) Math.min(schedule.edges(), Integer.MAX_VALUE));
+		} catch (ScheduleException e) {
+			span.close();
+			System.out.println("Improper format in " + filename + ": " + e.getMessage() + "\n");
+			profiler.print(System.out);
+			usage();
+		} catch (IOException e) {
+			span.close();
+			System.out.println("Unable to compute " + filename);
+			System.out.println(e.toString() + "\n");
+			profiler.print(System.out);
+			usage();
+		} finally {
+			span.close();
 		}
-		return retI;
 	}
 
 	/**
-	 * Discovers nodes that will be prime, and stores them in the static string
-	 * 'primes'.
+	 * Loads, computes, and writes an edge list whose graph is kept off the heap.
+	 * 
+	 * @param writer   the writer set to the chosen format and rows
+	 * @param profiler the profiler each phase is recorded by
+	 * @param filename the name of the edge list
+	 * @param dir      the directory the graph is mapped from
+	 * @param writeTo  the name of the file to write, or null for the console
 	 */
-	private static void discoverPrimeNodes() {
-		/* Discover nodes that will be prime */
-		for (PredsAndAdjs a : pA) {
-			if (a.getPEdgesSize() > 1) {
-				primes += a.getNode();
-			}
+	private static void runOffHeap(ResultWriter writer, Profiler profiler, String filename, File dir,
+			String writeTo) {
+		Profiler.Span span = profiler.start("loadOffHeap");
+		try (OffHeapSchedule schedule = OffHeapSchedule.loadEdgeList(filename, dir)) {
+			span.end(schedule.size(), schedule.edgeCount());
+			span = profiler.start("compute");
+			schedule.compute();
+			span.end(schedule.size(), schedule.edgeCount());
+			span = profiler.start("output");
+			output(writer, schedule, writeTo);
+			span.end(schedule.size(), schedule.edgeCount());
+		} catch (ScheduleException e) {
+			span.close();
+			System.out.println("Improper format in " + filename + ": " + e.getMessage() + "\n");
+			profiler.print(System.out);
+			usage();
+		} catch (IOException e) {
+			span.close();
+			System.out.println("Unable to load " + filename);
+			System.out.println(e.toString() + "\n");
+			profiler.print(System.out);
+			usage();
+		} finally {
+			span.close();
 		}
 	}
 
 	/**
-	 * Sets the prime values for adjacent nodes.
+	 * Computes every file named by a directory or list file, and displays a
+	 * summary line for each file followed by the number that failed and the number
+	 * that reused the plan of a file with the same network.
+	 * 
+	 * @param runner    the batch runner
+	 * @param plans     the plan cache of the runner's engine
+	 * @param dirOrList the name of a directory or a file listing one file per line
 	 */
-	private static void primeWorkOne() {
-		for (int i = 0; i < pA.size(); i++) {
-			PredsAndAdjs a = pA.get(i);
-			for (int j = 0; j < a.getAEdgesSize(); j++) {
-				String s = a.getAdjs().get(j);
-				for (char c : primes.toCharArray()) {
-					if (s.equals(Character.toString(c))) {
-						a.setAdjPrime(j, s);
-						break;
-					}
+	private static void runBatch(BatchRunner runner, PlanCache plans, String dirOrList) {
+		try {
+			long start = System.nanoTime();
+			List<String> files = BatchRunner.listFiles(dirOrList);
+			List<BatchRunner.FileResult> results = runner.run(files);
+			int failed = 0;
+			System.out.println("File   Duration   Critical Activities");
+			System.out.println("-----------------------------------------------------");
+			for (BatchRunner.FileResult r : results) {
+				System.out.println(r.toString());
+				if (r.getError() != null) {
+					failed++;
 				}
 			}
+			System.out.println();
+			System.out.println(files.size() + " files, " + failed + " failed, " + plans.hits()
+					+ " reused a plan, in " + (System.nanoTime() - start) / 1000000 + " ms");
+		} catch (IOException e) {
+			System.out.println("Unable to load " + dirOrList);
+			System.out.println(e.toString() + "\n");
+			usage();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
 	}
 
 	/**
-	 * Sets nodes with prime predecessors to just have the prime value as the only
-	 * predecessor with its respective edge value. Also adds the prime nodes with
-	 * its respective values.
+	 * Outputs each node's String value, EC, LC, and SlackTime, on the console or
+	 * to a file. This is done after the nodes are arranged in a topological
+	 * sequence, and their EC, LC, and SlackTime's are found.
+	 * 
+	 * @param writer   the writer set to the chosen format and rows
+	 * @param result   the computed schedule
+	 * @param filename the name of the file to write, or null for the console
 	 */
-	private static void primeWorkTwo() {
-		ArrayList<ArrayList<String>> tempPreds = new ArrayList<ArrayList<String>>();// only care about preds and pedges
-		for (int i = 0; i < pA.size(); i++) {
-			PredsAndAdjs p = pA.get(i);
-			for (char c : primes.toCharArray()) {
-				if (p.getNode().equals(Character.toString(c))) {
-					int pEdge = p.getPredEdge(0);
-					ArrayList<String> preds = new ArrayList<String>();
-					for (String s : p.getPreds()) {
-						preds.add(s);
-					}
-					tempPreds.add(preds);
-					p.setPEdgesZero();
-					p.setPredsPrime(pEdge);
-					break;
-				}
-			}
-		}
-
-		/* Defines other values of the prime node */
-		for (int i = 0; i < pA.size(); i++) {
-			PredsAndAdjs pAndA = pA.get(i);
-			for (char c : primes.toCharArray()) {
-				if (pAndA.getNode().equals(Character.toString(c))) {
-					pA.add(i, new PredsAndAdjs(pAndA.getNode() + "'"));
-					pA.get(i).addAdj(pAndA.getNode());
-					pA.get(i).addAEdge(pAndA.getPredEdge(0));
-					pA.get(i).setPredsAndPEdges(tempPreds.remove(0));
-					i++;
-					break;
-				}
+	private static void output(ResultWriter writer, ComputedSchedule result, String filename) {
+		try {
+			if (filename != null) {
+				writer.write(result, filename);
+			} else {
+				writer.write(result, Channels.newChannel(System.out));
+				System.out.flush();
 			}
+		} catch (IOException e) {
+			System.out.println("Unable to write " + (filename == null ? "the table" : filename));
+			System.out.println(e.toString() + "\n");
+			usage();
 		}
 	}
 
 	/**
-	 * Discovers the EC values of each node using its topological sequence.
+	 * Displays the critical paths and the longest paths from S to F on the
+	 * console, each as its length followed by its nodes.
+	 * 
+	 * @param paths       the paths of the computed schedule
+	 * @param allCritical true to display every critical path
+	 * @param longest     the number of longest paths to display
 	 */
-	private static void discoverECVals() {
-		/* Discover eC vals */
-		pA.get(0).setEC(0);
-		for (int i = 1; i < pA.size(); i++) {
-			PredsAndAdjs curr = pA.get(i);
-			if (curr.getPEdgesSize() > 1) {
-				curr.setEC(getMaxFormerEC(curr));
-			} else {
-				PredsAndAdjs p = getFormerPAByString(curr.getPred(0));
-				curr.setEC(p.getEC() + curr.getPredEdge(0));
+	private static void paths(LongestPaths paths, boolean allCritical, int longest) {
+		if (allCritical) {
+			long count = paths.countCritical();
+			System.out.println("Critical Paths: " + (count == Long.MAX_VALUE ? "more than " + count : count));
+			System.out.println("-----------------------------------------------------");
+			for (LongestPaths.Path p : paths.critical(MAX_PATHS)) {
+				System.out.println(p);
+			}
+			if (count > MAX_PATHS) {
+				System.out.println("... and " + (count == Long.MAX_VALUE ? "more" : count - MAX_PATHS + " more"));
 			}
+			System.out.println();
 		}
-	}
-
-	/**
-	 * @param p the node in question
-	 * @return the maximum EC value of a node's predecessors
-	 */
-	private static int getMaxFormerEC(PredsAndAdjs p) {
-		int max = 0;
-		int idx = 0;
-		for (String s : p.getPreds()) {
-			int poss = getFormerEC(s) + p.getPredEdge(idx);
-			if (poss > max) {
-				max = poss;
+		if (longest > 0) {
+			System.out.println("Longest Paths");
+			System.out.println("-----------------------------------------------------");
+			for (LongestPaths.Path p : paths.top(longest)) {
+				System.out.println(p);
 			}
-			idx++;
+			System.out.println();
 		}
-		return max;
 	}
 
 	/**
-	 * Gets the EC value of a node given it's String value.
+	 * Simulates the schedule with three-point duration estimates, and displays
+	 * percentiles of the completion time and the criticality of each node.
 	 * 
-	 * @param fmr the node's String value
-	 * @return the EC value of the node
-	 */
-	private static int getFormerEC(String fmr) {
-		return getFormerPAByString(fmr).getEC();
-	}
-
-	/**
-	 * @param fmr the String of the node that exists in this class's list
-	 * @return the node given it's String node value
+	 * @param schedule  the checked schedule
+	 * @param estimates the name of the estimates file
+	 * @param trials    the number of trials
 	 */
-	private static PredsAndAdjs getFormerPAByString(String fmr) {
-		for (PredsAndAdjs p : pA) {
-			if (p.getNode().equals(fmr)) {
-				return p;
-			}
+	private static void simulate(Schedule schedule, String estimates, int trials) {
+		MonteCarlo.Result sim = null;
+		try {
+			sim = new MonteCarlo(schedule, MonteCarlo.readEstimates(schedule, estimates)).run(trials, SEED);
+		} catch (ScheduleException e) {
+			System.out.println("Improper format in " + estimates + ": " + e.getMessage() + "\n");
+			usage();
+		} catch (IOException e) {
+			System.out.println("Unable to load " + estimates);
+			System.out.println(e.toString() + "\n");
+			usage();
 		}
-		return null;
-	}
 
-	/**
-	 * Discovers the LC values of each node using its topological sequence.
-	 */
-	private static void discoverLCVals() {
-		/* Discover lC vals */
-		pA.get(pA.size() - 1).setLC(pA.get(pA.size() - 1).getEC());
-		for (int i = pA.size() - 2; i > -1; i--) {
-			PredsAndAdjs curr = pA.get(i);
-			if (curr.getAEdgesSize() > 1) {
-				curr.setLC(getMinFormerLC(curr));
-			} else {
-				PredsAndAdjs p = getFormerPAByString(curr.getAdj(0));
-				curr.setLC(p.getLC() - curr.getAdjEdge(0));
-			}
+		System.out.printf("Completion Time: %d trials, mean %.2f, standard deviation %.2f%n", sim.trials(),
+				sim.mean(), sim.stdDev());
+		System.out.println("Percentile   Completion");
+		System.out.println("-----------------------------------------------------");
+		for (double p : PERCENTILES) {
+			System.out.printf("%-13s%.2f%n", (int) p + "%", sim.percentile(p));
 		}
-	}
-
-	/**
-	 * @param a the node in question
-	 * @return the minimum LC value of a node's adjacent values
-	 */
-	private static int getMinFormerLC(PredsAndAdjs a) {
-		int min = Integer.MAX_VALUE;
-		int idx = 0;
-		for (String s : a.getAdjs()) {
-			int poss = getFormerLC(s) - a.getAdjEdge(idx);
-			if (poss < min) {
-				min = poss;
-			}
-			idx++;
+		System.out.println();
+		System.out.println("Activity Node   Criticality");
+		System.out.println("-----------------------------------------------------");
+		for (String name : sim.names()) {
+			System.out.printf("%-16s%.1f%%%n", name, 100 * sim.criticality(name));
 		}
-		return min;
+		System.out.println();
 	}
 
 	/**
-	 * Gets the LC value of a node given it's String value.
+	 * Crashes the schedule at the least cost, and displays each step and the
+	 * activities that were crashed.
 	 * 
-	 * @param fmr the node's String value
-	 * @return the LC value of the node
+	 * @param schedule the checked schedule
+	 * @param costs    the name of the costs file
+	 * @param days     the most days to take off, or 0 for as many as it can
 	 */
-	private static int getFormerLC(String fmr) {
-		return getFormerPAByString(fmr).getLC();
-	}
+	private static void crash(Schedule schedule, String costs, int days) {
+		CrashSolver.Result crashed = null;
+		try {
+			crashed = new CrashSolver(schedule, CrashSolver.readCosts(schedule, costs)).crash(days);
+		} catch (ScheduleException e) {
+			System.out.println("Improper format in " + costs + ": " + e.getMessage() + "\n");
+			usage();
+		} catch (IOException e) {
+			System.out.println("Unable to load " + costs);
+			System.out.println(e.toString() + "\n");
+			usage();
+		}
 
-	/**
-	 * Outputs (on the console) each node's String value, EC, LC, and SlackTime.
-	 * This is done after the nodes are arranged in a topological sequence, and
-	 * their EC, LC, and SlackTime's are found.
-	 */
-	private static void output() {
-		System.out.println("Activity Node   EC     LC   SlackTime");
+		System.out.printf("Crashing: duration %d to %d, extra cost %.2f%n", crashed.getStart(), crashed.getDuration(),
+				crashed.getCost());
+		System.out.println("Duration   Cost         Changes");
 		System.out.println("-----------------------------------------------------");
-		for (PredsAndAdjs s : pA) {
-			if (!s.isPrime()) {
-				System.out.println(s.toString());
+		for (CrashSolver.Step step : crashed.steps()) {
+			StringBuilder changes = new StringBuilder();
+			for (String name : step.getShortened()) {
+				changes.append(name).append(" -").append(step.getDays()).append(' ');
+			}
+			for (String name : step.getLengthened()) {
+				changes.append(name).append(" +").append(step.getDays()).append(' ');
 			}
+			System.out.printf("%-11d%-13.2f%s%n", step.getDuration(), step.getCost(), changes.toString().trim());
+		}
+		System.out.println();
+		System.out.println("Activity Node   Normal   Crashed   Cost");
+		System.out.println("-----------------------------------------------------");
+		for (String name : crashed.crashed()) {
+			System.out.printf("%-16s%-9d%-10d%.2f%n", name, crashed.normalOf(name), crashed.durationOf(name),
+					crashed.costOf(name));
 		}
 		System.out.println();
 	}
 
-}// end of class
\ No newline at end of file
+}// end of class
@@ -0,0 +1,422 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Loads schedules from adjacency matrices, edge lists, or compiled graph files,
+ * and computes the EC, LC, and slack time of every node. An engine keeps no
+ * state between calls, so one engine can load and compute any number of
+ * schedules from any number of threads at once. Input that breaks the rules of
+ * a topological sequence is reported with a ScheduleException.
+ * <p>
+ * Each phase of loading and computing is a package-private static method, so
+ * the benchmarks in bench/ can time it on its own, and each run of a phase is
+ * recorded by the engine's Profiler.
+ *
+ * @author Aaron Goin
+ */
+public class CriticalPathEngine {
+	private final boolean parallel;
+	private final PlanCache plans;
+	private final Profiler profiler;
+
+	/**
+	 * An engine that sweeps each schedule on the calling thread.
+	 */
+	public CriticalPathEngine() {
+		this(false);
+	}
+
+	/**
+	 * @param parallel true to sweep the independent projects of each schedule in
+	 *                 parallel when no project has more than half its
+	 *                 activities, and otherwise a dependency level at a time,
+	 *                 splitting wide levels across the common fork-join pool
+	 */
+	public CriticalPathEngine(boolean parallel) {
+		this(parallel, null);
+	}
+
+	/**
+	 * @param parallel true to sweep independent projects or wide dependency
+	 *                 levels across the common fork-join pool
+	 * @param plans    the plans reused by schedules that share a structure, or null
+	 *                 to sort and check every schedule
+	 */
+	public CriticalPathEngine(boolean parallel, PlanCache plans) {
+		this(parallel, plans, Profiler.events());
+	}
+
+	/**
+	 * @param parallel true to sweep independent projects or wide dependency
+	 *                 levels across the common fork-join pool
+	 * @param plans    the plans reused by schedules that share a structure, or null
+	 *                 to sort and check every schedule
+	 * @param profiler the profiler each phase of loading and computing is
+	 *                 recorded by
+	 */
+	public CriticalPathEngine(boolean parallel, PlanCache plans, Profiler profiler) {
+		this.parallel = parallel;
+		this.plans = plans;
+		this.profiler = profiler;
+	}
+
+	/**
+	 * Parses an adjacency matrix text file, checking the S and F rules as each row
+	 * is read, and finds a topological sequence.
+	 *
+	 * @param filename the name of the text file that contains an adjacency matrix
+	 * @return the checked schedule
+	 * @throws IOException       if the file can't be read
+	 * @throws ScheduleException if the matrix is formatted incorrectly or breaks
+	 *                           the S and F rules
+	 */
+	public Schedule loadMatrix(String filename) throws IOException, ScheduleException {
+		return loadMatrix(filename, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Parses an adjacency matrix text file with a limit on the threads its rows
+	 * are parsed with, for callers that already load several files at once.
+	 *
+	 * @param filename the name of the text file that contains an adjacency matrix
+	 * @param threads  the most threads used to parse rows
+	 * @return the checked schedule
+	 * @throws IOException       if the file can't be read
+	 * @throws ScheduleException if the matrix is formatted incorrectly or breaks
+	 *                           the S and F rules
+	 */
+	public Schedule loadMatrix(String filename, int threads) throws IOException, ScheduleException {
+		SymbolTable symbols;
+		CsrGraph graph;
+		try (Profiler.Span span = profiler.start("parse")) {
+			MatrixParser parser = new MatrixParser(filename);
+			try {
+				parser.parse(threads);
+			} catch (IllegalArgumentException e) {
+				throw new ScheduleException(e.getMessage());
+			}
+			symbols = parser.symbols();
+			graph = parser.graph();
+			span.end(graph.size(), graph.edgeCount());
+		}
+		return new Schedule(symbols, graph, order(symbols, graph));
+	}
+
+	/**
+	 * Reads an edge list text file, checks it, and finds a topological sequence.
+	 *
+	 * @param filename the name of the text file that contains an edge list
+	 * @return the checked schedule
+	 * @throws IOException       if the file can't be read
+	 * @throws ScheduleException if a line is formatted incorrectly, an edge
+	 *                           breaks the S and F rules, or an edge repeats an
+	 *                           earlier one
+	 */
+	public Schedule loadEdgeList(String filename) throws IOException, ScheduleException {
+		try (Reader r = new FileReader(filename)) {
+			return loadEdgeList(r);
+		}
+	}
+
+	/**
+	 * Streams an edge list straight into the graph, one "from to duration" line at
+	 * a time, so memory grows with the number of nodes and edges rather than with
+	 * a full adjacency matrix. Each edge is checked against the same S and F rules
+	 * as a matrix row while it is read.
+	 *
+	 * @param in the edge list, which is read to the end but not closed
+	 * @return the checked schedule
+	 * @throws IOException       if the edge list can't be read
+	 * @throws ScheduleException if a line is formatted incorrectly, an edge
+	 *                           breaks the S and F rules, or an edge repeats an
+	 *                           earlier one
+	 */
+	public Schedule loadEdgeList(Reader in) throws IOException, ScheduleException {
+		SymbolTable symbols = new SymbolTable();
+		CsrGraph graph;
+		try (Profiler.Span span = profiler.start("loadEdgeList")) {
+			graph = readEdgeList(in, symbols);
+			span.end(graph.size(), graph.edgeCount());
+		}
+		return new Schedule(symbols, graph, order(symbols, graph));
+	}
+
+	/**
+	 * Reads and checks the edges of an edge list into a graph.
+	 *
+	 * @param in      the edge list
+	 * @param symbols the table the node names are interned in
+	 * @return the graph of the edge list
+	 */
+	private static CsrGraph readEdgeList(Reader in, SymbolTable symbols) throws IOException, ScheduleException {
+		GraphBuilder builder = new GraphBuilder(symbols);
+		int[] dur = new int[16];// the duration of every edge into a node, -1 until one is read
+		Arrays.fill(dur, -1);
+		int[] blanks = new int[16];// the number of edges read before each blank line
+		int blankCount = 0;
+
+		BufferedReader r = new BufferedReader(in);
+		String line;
+		int lineNum = 0;
+		while ((line = r.readLine()) != null) {
+			lineNum++;
+			line = line.trim();
+			if (line.equals("")) {
+				if (blankCount == blanks.length) {
+					blanks = Arrays.copyOf(blanks, blankCount * 2);
+				}
+				blanks[blankCount++] = builder.edgeCount();
+				continue;
+			}
+			String[] parts = line.split("\\s+");
+			if (parts.length != 3) {
+				throw new ScheduleException("line " + lineNum + ": expected \"from to duration\"");
+			}
+			int weight;
+			try {
+				weight = Integer.parseInt(parts[2]);
+			} catch (NumberFormatException e) {
+				throw new ScheduleException("line " + lineNum + ": " + parts[2] + " is not an integer");
+			}
+
+			int from = symbols.intern(parts[0]);
+			int to = symbols.intern(parts[1]);
+			if (symbols.size() > dur.length) {
+				int old = dur.length;
+				dur = Arrays.copyOf(dur, old * 2);
+				Arrays.fill(dur, old, dur.length, -1);
+			}
+
+			/* No edges into S or out of F, and F's edges are all 0 */
+			if (weight < 0) {
+				throw new ScheduleException("line " + lineNum + ": durations must not be negative");
+			}
+			if (parts[1].equals("S") || parts[0].equals("F")) {
+				throw new ScheduleException("line " + lineNum + ": no edge may point into S or leave F");
+			}
+			if (parts[1].equals("F") && weight != 0) {
+				throw new ScheduleException("line " + lineNum + ": every edge into F must be 0");
+			}
+
+			/* Check that each edge into a node is equal */
+			if (dur[to] != -1 && dur[to] != weight) {
+				throw new ScheduleException("line " + lineNum + ": every edge into " + parts[1]
+						+ " must be " + dur[to]);
+			}
+			dur[to] = weight;
+			builder.addEdge(from, to, weight);
+		}
+
+		/* A matrix can't hold two edges between the same nodes */
+		int repeat = builder.firstRepeat();
+		if (repeat != -1) {
+			int repeatLine = repeat + 1;
+			for (int i = 0; i < blankCount && blanks[i] <= repeat; i++) {
+				repeatLine++;
+			}
+			throw new ScheduleException("line " + repeatLine + ": the edge " + symbols.name(builder.from(repeat))
+					+ " -> " + symbols.name(builder.to(repeat)) + " was already read");
+		}
+
+		/* S needs an adjacent node, and F a predecessor */
+		int sIdx = symbols.id("S");
+		int fIdx = symbols.id("F");
+		if (sIdx < 0 || fIdx < 0 || dur[fIdx] != 0) {
+			throw new ScheduleException("S needs an adjacent node, and F a predecessor");
+		}
+		CsrGraph graph = builder.build();
+		if (graph.outDegree(sIdx) == 0) {
+			throw new ScheduleException("S needs an adjacent node, and F a predecessor");
+		}
+		return graph;
+	}
+
+	/**
+	 * Loads a schedule from a graph file written by compile(), without parsing
+	 * it again. Its sections are only checked to be in bounds, so a truncated or
+	 * corrupt file is reported like any other improperly formatted input.
+	 *
+	 * @param filename the name of the compiled graph file
+	 * @return the schedule
+	 * @throws IOException       if the file can't be read
+	 * @throws ScheduleException if the file isn't a compiled graph of this
+	 *                           version, or is truncated or corrupt
+	 */
+	public Schedule loadCompiled(String filename) throws IOException, ScheduleException {
+		try (Profiler.Span span = profiler.start("loadCompiled")) {
+			Schedule schedule = GraphFile.load(filename);
+			span.end(schedule.graph().size(), schedule.graph().edgeCount());
+			return schedule;
+		} catch (IllegalArgumentException e) {
+			throw new ScheduleException("the compiled graph file is corrupt: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Writes a checked schedule to a compiled graph file.
+	 *
+	 * @param schedule the schedule
+	 * @param filename the name of the graph file to write
+	 * @throws IOException if the file can't be written
+	 */
+	public void compile(Schedule schedule, String filename) throws IOException {
+		try (Profiler.Span span = profiler.start("compile")) {
+			GraphFile.write(schedule, filename);
+			span.end(schedule.graph().size(), schedule.graph().edgeCount());
+		}
+	}
+
+	/**
+	 * Discovers the EC and LC values of every node in a schedule.
+	 *
+	 * @param schedule the schedule
+	 * @return the EC, LC, and slack time of every node
+	 */
+	public ScheduleResult compute(Schedule schedule) {
+		CsrGraph graph = schedule.graph();
+		int[] order = schedule.order();
+		int[] eC = new int[graph.size()];
+		int[] lC = new int[graph.size()];
+		int n = graph.size();
+		int m = graph.edgeCount();
+		if (parallel) {
+			ComponentSweep parts;
+			try (Profiler.Span span = profiler.start("components")) {
+				parts = new ComponentSweep(graph, order);
+				span.end(n, m);
+			}
+			if (parts.largest() * 2L <= n - 2) {
+				try (Profiler.Span span = profiler.start("componentSweep EC")) {
+					parts.discoverEC(eC, ForkJoinPool.commonPool());
+					span.end(n, m);
+				}
+				try (Profiler.Span span = profiler.start("componentSweep LC")) {
+					parts.discoverLC(eC, lC, ForkJoinPool.commonPool());
+					span.end(n, m);
+				}
+			} else {
+				LevelSweep levels;
+				try (Profiler.Span span = profiler.start("levelSweep EC")) {
+					levels = new LevelSweep(graph, order);
+					levels.discoverEC(eC, ForkJoinPool.commonPool());
+					span.end(n, m);
+				}
+				try (Profiler.Span span = profiler.start("levelSweep LC")) {
+					levels.discoverLC(eC, lC, ForkJoinPool.commonPool());
+					span.end(n, m);
+				}
+			}
+		} else {
+			try (Profiler.Span span = profiler.start("discoverECVals")) {
+				discoverECVals(graph, order, eC);
+				span.end(n, m);
+			}
+			try (Profiler.Span span = profiler.start("discoverLCVals")) {
+				discoverLCVals(graph, order, eC, lC);
+				span.end(n, m);
+			}
+		}
+		return new ScheduleResult(schedule, eC, lC);
+	}
+
+	/**
+	 * Gets the plan of a schedule, so what-if durations for the same network can
+	 * be swept without loading the schedule again. The plan comes from the
+	 * engine's plan cache when it has one.
+	 *
+	 * @param schedule the schedule
+	 * @return the plan of the schedule
+	 */
+	public SchedulePlan plan(Schedule schedule) {
+		if (plans == null) {
+			return new SchedulePlan(schedule.symbols(), schedule.graph(), schedule.order());
+		}
+		return plans.get(schedule);
+	}
+
+	/**
+	 * Copies a schedule into one whose edges can be edited, with its EC and LC
+	 * values kept up to date.
+	 *
+	 * @param schedule the schedule
+	 * @return an editable copy of the schedule
+	 */
+	public IncrementalSchedule edit(Schedule schedule) {
+		return new IncrementalSchedule(schedule.graph(), schedule.order());
+	}
+
+	/**
+	 * Gets the topological sequence of a loaded graph from the engine's plan
+	 * cache, or sorts the graph if the engine has none.
+	 */
+	private int[] order(SymbolTable symbols, CsrGraph graph) throws ScheduleException {
+		try (Profiler.Span span = profiler.start(plans == null ? "sortTopo" : "plan")) {
+			int[] order = plans == null ? sortTopo(symbols, graph) : plans.get(symbols, graph).order();
+			span.end(graph.size(), graph.edgeCount());
+			return order;
+		}
+	}
+
+	/**
+	 * Finds a topological sequence of the graph. The sequence must start at S and
+	 * end at F, and every other node needs both a predecessor and an adjacent
+	 * node.
+	 *
+	 * @return the topological sequence
+	 * @throws ScheduleException if the graph has a cycle, naming the nodes on it,
+	 *                           or a node is missing a predecessor or adjacent node
+	 */
+	static int[] sortTopo(SymbolTable symbols, CsrGraph graph) throws ScheduleException {
+		int[] order = graph.topoOrder();
+		if (order == null) {
+			int[] cycle = graph.findCycle();
+			StringBuilder names = new StringBuilder();
+			for (int v : cycle) {
+				names.append(symbols.name(v)).append(" -> ");
+			}
+			names.append(symbols.name(cycle[0]));
+			throw new ScheduleException("the nodes have a cycle: " + names);
+		}
+		if (order[0] != symbols.id("S") || order[order.length - 1] != symbols.id("F")) {
+			throw new ScheduleException("the sequence must start at S and end at F");
+		}
+		for (int i = 1; i < order.length - 1; i++) {
+			if (graph.inDegree(order[i]) == 0 || graph.outDegree(order[i]) == 0) {
+				throw new ScheduleException("node " + symbols.name(order[i])
+						+ " needs a predecessor and an adjacent node");
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * Discovers the EC values of each node using its topological sequence. The EC
+	 * of a node is the maximum of each predecessor's EC plus the edge between them.
+	 */
+	static void discoverECVals(CsrGraph graph, int[] order, int[] eC) {
+		/* Discover eC vals */
+		for (int i = 1; i < order.length; i++) {
+			int v = order[i];
+			eC[v] = graph.maxIn(eC, v);
+		}
+	}
+
+	/**
+	 * Discovers the LC values of each node using its topological sequence in
+	 * reverse. The LC of a node is the minimum of each adjacent node's LC minus the
+	 * edge between them.
+	 */
+	static void discoverLCVals(CsrGraph graph, int[] order, int[] eC, int[] lC) {
+		/* Discover lC vals */
+		int f = order[order.length - 1];
+		lC[f] = eC[f];
+		for (int i = order.length - 2; i > -1; i--) {
+			int v = order[i];
+			lC[v] = graph.minOut(lC, v);
+		}
+	}
+}
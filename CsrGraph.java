@@ -0,0 +1,314 @@
+/**
+ * A directed, weighted graph stored in compressed sparse row form. Outgoing
+ * edges of node v are the edges from outStart(v) up to, but not including,
+ * outEnd(v), and incoming edges are stored the same way in a reverse copy, so
+ * every traversal is a walk over primitive arrays.
+ *
+ * @author Aaron Goin
+ */
+public class CsrGraph {
+	private final int n;
+	private final int[] outOff;
+	private final int[] outTgt;
+	private final int[] outW;
+	private final int[] inOff;
+	private final int[] inSrc;
+	private final int[] inW;
+
+	/**
+	 * Builds the forward and reverse rows from an edge list. Edges keep the order
+	 * they were given in within each row.
+	 *
+	 * @param n   the number of nodes, which are numbered 0 to n - 1
+	 * @param src the source node of each edge
+	 * @param dst the target node of each edge
+	 * @param w   the weight of each edge
+	 * @param m   the number of edges used from the three arrays
+	 */
+	public CsrGraph(int n, int[] src, int[] dst, int[] w, int m) {
+		this.n = n;
+		outOff = new int[n + 1];
+		inOff = new int[n + 1];
+		for (int e = 0; e < m; e++) {
+			outOff[src[e] + 1]++;
+			inOff[dst[e] + 1]++;
+		}
+		for (int v = 0; v < n; v++) {
+			outOff[v + 1] += outOff[v];
+			inOff[v + 1] += inOff[v];
+		}
+
+		outTgt = new int[m];
+		outW = new int[m];
+		inSrc = new int[m];
+		inW = new int[m];
+		int[] outPos = new int[n];
+		int[] inPos = new int[n];
+		for (int e = 0; e < m; e++) {
+			int o = outOff[src[e]] + outPos[src[e]]++;
+			outTgt[o] = dst[e];
+			outW[o] = w[e];
+			int i = inOff[dst[e]] + inPos[dst[e]]++;
+			inSrc[i] = src[e];
+			inW[i] = w[e];
+		}
+	}
+
+	/**
+	 * Wraps rows that were already built, such as ones loaded from a compiled
+	 * graph file.
+	 *
+	 * @param outOff the offsets of each node's outgoing edges, n + 1 long
+	 * @param outTgt the target of each outgoing edge
+	 * @param outW   the weight of each outgoing edge
+	 * @param inOff  the offsets of each node's incoming edges, n + 1 long
+	 * @param inSrc  the source of each incoming edge
+	 * @param inW    the weight of each incoming edge
+	 */
+	CsrGraph(int[] outOff, int[] outTgt, int[] outW, int[] inOff, int[] inSrc, int[] inW) {
+		this.n = outOff.length - 1;
+		this.outOff = outOff;
+		this.outTgt = outTgt;
+		this.outW = outW;
+		this.inOff = inOff;
+		this.inSrc = inSrc;
+		this.inW = inW;
+	}
+
+	/**
+	 * @return the backing arrays, in the order the array constructor takes them
+	 */
+	int[][] arrays() {
+		return new int[][] { outOff, outTgt, outW, inOff, inSrc, inW };
+	}
+
+	/**
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return n;
+	}
+
+	/**
+	 * @return the number of edges
+	 */
+	public int edgeCount() {
+		return outTgt.length;
+	}
+
+	/**
+	 * @param v a node
+	 * @return the index of the first outgoing edge of the node
+	 */
+	public int outStart(int v) {
+		return outOff[v];
+	}
+
+	/**
+	 * @param v a node
+	 * @return the index after the last outgoing edge of the node
+	 */
+	public int outEnd(int v) {
+		return outOff[v + 1];
+	}
+
+	/**
+	 * @param e the index of an outgoing edge
+	 * @return the node the edge points to
+	 */
+	public int outTarget(int e) {
+		return outTgt[e];
+	}
+
+	/**
+	 * @param e the index of an outgoing edge
+	 * @return the weight of the edge
+	 */
+	public int outWeight(int e) {
+		return outW[e];
+	}
+
+	/**
+	 * @param v a node
+	 * @return the index of the first incoming edge of the node
+	 */
+	public int inStart(int v) {
+		return inOff[v];
+	}
+
+	/**
+	 * @param v a node
+	 * @return the index after the last incoming edge of the node
+	 */
+	public int inEnd(int v) {
+		return inOff[v + 1];
+	}
+
+	/**
+	 * @param e the index of an incoming edge
+	 * @return the node the edge comes from
+	 */
+	public int inSource(int e) {
+		return inSrc[e];
+	}
+
+	/**
+	 * @param e the index of an incoming edge
+	 * @return the weight of the edge
+	 */
+	public int inWeight(int e) {
+		return inW[e];
+	}
+
+	/**
+	 * @param v a node
+	 * @return the number of predecessors of the node
+	 */
+	public int inDegree(int v) {
+		return inOff[v + 1] - inOff[v];
+	}
+
+	/**
+	 * @param v a node
+	 * @return the number of adjacent nodes of the node
+	 */
+	public int outDegree(int v) {
+		return outOff[v + 1] - outOff[v];
+	}
+
+	/**
+	 * @param eC the EC values of the node's predecessors
+	 * @param v  a node
+	 * @return the maximum of each predecessor's EC plus the edge between them, or
+	 *         0 if the node has no predecessors
+	 */
+	public int maxIn(int[] eC, int v) {
+		int max = 0;
+		for (int e = inOff[v]; e < inOff[v + 1]; e++) {
+			int poss = eC[inSrc[e]] + inW[e];
+			if (poss > max) {
+				max = poss;
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * @param lC the LC values of the node's adjacent nodes
+	 * @param v  a node
+	 * @return the minimum of each adjacent node's LC minus the edge between them,
+	 *         or Integer.MAX_VALUE if the node has no adjacent nodes
+	 */
+	public int minOut(int[] lC, int v) {
+		int min = Integer.MAX_VALUE;
+		for (int e = outOff[v]; e < outOff[v + 1]; e++) {
+			int poss = lC[outTgt[e]] - outW[e];
+			if (poss < min) {
+				min = poss;
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * Finds a topological sequence with Kahn's algorithm. Ready nodes are kept on
+	 * a stack, so the most recently freed node is visited next and the sequence
+	 * follows the same branches a DFS search would.
+	 *
+	 * @return the nodes in a topological sequence, or null if the graph has a
+	 *         cycle
+	 */
+	public int[] topoOrder() {
+		int[] indeg = new int[n];
+		for (int v = 0; v < n; v++) {
+			indeg[v] = inDegree(v);
+		}
+
+		int[] stack = new int[n];
+		int top = 0;
+		for (int v = n - 1; v > -1; v--) {
+			if (indeg[v] == 0) {
+				stack[top++] = v;
+			}
+		}
+
+		int[] order = new int[n];
+		int count = 0;
+		while (top > 0) {
+			int v = stack[--top];
+			order[count++] = v;
+			for (int e = outOff[v]; e < outOff[v + 1]; e++) {
+				int t = outTgt[e];
+				if (--indeg[t] == 0) {
+					stack[top++] = t;
+				}
+			}
+		}
+
+		if (count != n) {
+			return null;
+		}
+		return order;
+	}
+
+	/**
+	 * Finds a cycle in a graph that topoOrder() couldn't sort. Every node that
+	 * Kahn's algorithm can't free still has a predecessor that wasn't freed, so
+	 * walking back through those predecessors must repeat a node, and the walk
+	 * from that node back to itself is a cycle. This takes O(V + E) time.
+	 *
+	 * @return the nodes on a cycle, in edge order, or null if there is no cycle
+	 */
+	public int[] findCycle() {
+		int[] indeg = new int[n];
+		int[] stack = new int[n];
+		int top = 0;
+		for (int v = 0; v < n; v++) {
+			indeg[v] = inDegree(v);
+			if (indeg[v] == 0) {
+				stack[top++] = v;
+			}
+		}
+		while (top > 0) {
+			int v = stack[--top];
+			for (int e = outOff[v]; e < outOff[v + 1]; e++) {
+				if (--indeg[outTgt[e]] == 0) {
+					stack[top++] = outTgt[e];
+				}
+			}
+		}
+
+		int start = -1;
+		for (int v = 0; v < n && start < 0; v++) {
+			if (indeg[v] > 0) {
+				start = v;
+			}
+		}
+		if (start < 0) {
+			return null;
+		}
+
+		/* Walk back until a node repeats; seen holds each node's step plus one */
+		int[] seen = new int[n];
+		int[] walk = new int[n + 1];
+		int steps = 0;
+		int v = start;
+		while (seen[v] == 0) {
+			seen[v] = steps + 1;
+			walk[steps++] = v;
+			int e = inOff[v];
+			while (indeg[inSrc[e]] == 0) {
+				e++;
+			}
+			v = inSrc[e];
+		}
+
+		/* The walk went against the edges, so the cycle is read backwards */
+		int from = seen[v] - 1;
+		int[] cycle = new int[steps - from];
+		for (int i = 0; i < cycle.length; i++) {
+			cycle[i] = walk[steps - 1 - i];
+		}
+		return cycle;
+	}
+}
@@ -0,0 +1,116 @@
+import java.util.Arrays;
+
+/**
+ * Collects edges between interned nodes in growable primitive arrays, and packs
+ * them into a compressed sparse row graph once every edge has been added.
+ *
+ * @author Aaron Goin
+ */
+public class GraphBuilder {
+	private final SymbolTable symbols;
+	private int[] src;
+	private int[] dst;
+	private int[] w;
+	private int m;
+
+	/**
+	 * An empty builder for nodes named in a symbol table.
+	 *
+	 * @param symbols the table whose ids are used as node numbers
+	 */
+	public GraphBuilder(SymbolTable symbols) {
+		this.symbols = symbols;
+		src = new int[16];
+		dst = new int[16];
+		w = new int[16];
+	}
+
+	/**
+	 * @param from   the id of the node the edge comes from
+	 * @param to     the id of the node the edge points to
+	 * @param weight the edge value
+	 */
+	public void addEdge(int from, int to, int weight) {
+		if (m == src.length) {
+			src = Arrays.copyOf(src, m * 2);
+			dst = Arrays.copyOf(dst, m * 2);
+			w = Arrays.copyOf(w, m * 2);
+		}
+		src[m] = from;
+		dst[m] = to;
+		w[m++] = weight;
+	}
+
+	/**
+	 * @return the number of edges added so far
+	 */
+	public int edgeCount() {
+		return m;
+	}
+
+	/**
+	 * @param e the index of an edge, in the order edges were added
+	 * @return the id of the node the edge comes from
+	 */
+	public int from(int e) {
+		return src[e];
+	}
+
+	/**
+	 * @param e the index of an edge, in the order edges were added
+	 * @return the id of the node the edge points to
+	 */
+	public int to(int e) {
+		return dst[e];
+	}
+
+	/**
+	 * Finds the first edge that repeats an earlier edge between the same two
+	 * nodes, which a matrix can't hold. The edges are grouped by the node they
+	 * come from with a counting sort, keeping the order they were added in, and
+	 * each group marks the nodes it points to, in O(V + E) time.
+	 *
+	 * @return the index of the first repeated edge, in the order edges were
+	 *         added, or -1 if no edge is repeated
+	 */
+	public int firstRepeat() {
+		int n = symbols.size();
+		int[] off = new int[n + 1];
+		for (int e = 0; e < m; e++) {
+			off[src[e] + 1]++;
+		}
+		for (int v = 0; v < n; v++) {
+			off[v + 1] += off[v];
+		}
+		int[] pos = Arrays.copyOf(off, n);
+		int[] byFrom = new int[m];
+		for (int e = 0; e < m; e++) {
+			byFrom[pos[src[e]]++] = e;
+		}
+
+		int[] seen = pos;// the group that last pointed to each node, plus 1
+		Arrays.fill(seen, 0);
+		int first = -1;
+		for (int v = 0; v < n; v++) {
+			for (int i = off[v]; i < off[v + 1]; i++) {
+				int e = byFrom[i];
+				if (seen[dst[e]] == v + 1) {
+					if (first == -1 || e < first) {
+						first = e;
+					}
+					break;// the rest of the group was added later
+				}
+				seen[dst[e]] = v + 1;
+			}
+		}
+		return first;
+	}
+
+	/**
+	 * @return a graph with a node for every name in the symbol table and every
+	 *         edge added so far
+	 */
+	public CsrGraph build() {
+		return new CsrGraph(symbols.size(), src, dst, w, m);
+	}
+}
@@ -0,0 +1,282 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads and writes a checked schedule compiled into a binary file: the node
+ * names, the forward and reverse CSR rows, and a topological sequence. Loading
+ * memory-maps the file and copies each section straight into its array, so
+ * nothing is parsed again, and the sections are only checked to be in bounds.
+ * <p>
+ * The file is a magic number, a version, the node and edge counts, then the int
+ * arrays outOff, outTgt, outW, inOff, inSrc, inW and order, then the byte
+ * offset of each name followed by the UTF-8 bytes of every name.
+ *
+ * @author Aaron Goin
+ */
+public class GraphFile {
+	private static final int MAGIC = 0x43504752;// "CPGR"
+	private static final int VERSION = 2;
+
+	/**
+	 * Not used, since a graph file is only written and loaded.
+	 */
+	private GraphFile() {
+	}
+
+	/**
+	 * Writes a schedule to a binary file.
+	 *
+	 * @param schedule the checked schedule
+	 * @param filename the name of the file to write
+	 * @throws IOException if the file can't be written
+	 */
+	public static void write(Schedule schedule, String filename) throws IOException {
+		SymbolTable symbols = schedule.symbols();
+		CsrGraph graph = schedule.graph();
+		int n = graph.size();
+		byte[][] names = new byte[n][];
+		for (int i = 0; i < n; i++) {
+			names[i] = symbols.name(i).getBytes(StandardCharsets.UTF_8);
+		}
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(filename), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(n);
+			out.writeInt(graph.edgeCount());
+			for (int[] a : graph.arrays()) {
+				writeInts(out, a);
+			}
+			writeInts(out, schedule.order());
+
+			int off = 0;
+			for (byte[] name : names) {
+				out.writeInt(off);
+				off += name.length;
+			}
+			out.writeInt(off);
+			for (byte[] name : names) {
+				out.write(name);
+			}
+		}
+	}
+
+	/**
+	 * Loads a schedule written by write(). Nothing is parsed again, but every
+	 * count, offset, and node id is checked against the file size and the number
+	 * of nodes, the sequence must be a topological order, and the incoming edges
+	 * must be the outgoing ones reversed, all in O(V + E) time. A truncated or
+	 * corrupt file is rejected instead of computing wrong values.
+	 *
+	 * @param filename the name of the compiled graph file
+	 * @return the loaded schedule
+	 * @throws IOException       if the file can't be read
+	 * @throws ScheduleException if the file isn't a compiled graph of this
+	 *                           version, or is truncated or corrupt
+	 */
+	public static Schedule load(String filename) throws IOException, ScheduleException {
+		try (FileChannel ch = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			long size = ch.size();
+			if (size < 16) {
+				throw new ScheduleException("not a compiled graph file");
+			}
+			ByteBuffer head = ch.map(FileChannel.MapMode.READ_ONLY, 0, 16);
+			if (head.getInt(0) != MAGIC) {
+				throw new ScheduleException("not a compiled graph file");
+			}
+			if (head.getInt(4) != VERSION) {
+				throw new ScheduleException("compiled graph version " + head.getInt(4) + " instead of " + VERSION);
+			}
+			int n = head.getInt(8);
+			int m = head.getInt(12);
+			if (n < 2 || n == Integer.MAX_VALUE || m < 0 || m > Integer.MAX_VALUE / 4) {
+				throw new ScheduleException("the compiled graph file is corrupt");
+			}
+			long need = 16 + 4L * (2L * (n + 1) + 4L * m + n + n + 1);
+			if (size < need) {
+				throw new ScheduleException("the compiled graph file is truncated");
+			}
+
+			long at = 16;
+			int[][] a = new int[6][];
+			int[] lens = { n + 1, m, m, n + 1, m, m };
+			for (int i = 0; i < 6; i++) {
+				a[i] = readInts(ch, at, lens[i]);
+				at += 4L * lens[i];
+			}
+			int[] order = readInts(ch, at, n);
+			at += 4L * n;
+			int[] nameOff = readInts(ch, at, n + 1);
+			at += 4L * (n + 1);
+			checkOffsets(nameOff);
+			if (size < at + nameOff[n]) {
+				throw new ScheduleException("the compiled graph file is truncated");
+			}
+			checkOffsets(a[0]);
+			checkOffsets(a[3]);
+			if (a[0][n] != m || a[3][n] != m) {
+				throw new ScheduleException("the compiled graph file is corrupt");
+			}
+			checkIds(a[1], n);
+			checkIds(a[4], n);
+			checkIds(order, n);
+			checkEdges(a, order, n);
+
+			MappedByteBuffer text = ch.map(FileChannel.MapMode.READ_ONLY, at, nameOff[n]);
+			SymbolTable symbols = new SymbolTable(n);
+			for (int i = 0; i < n; i++) {
+				byte[] name = new byte[nameOff[i + 1] - nameOff[i]];
+				text.get(nameOff[i], name);
+				if (symbols.intern(new String(name, StandardCharsets.UTF_8)) != i) {
+					throw new ScheduleException("the compiled graph file is corrupt");
+				}
+			}
+			if (symbols.id("S") != order[0] || symbols.id("F") != order[n - 1]) {
+				throw new ScheduleException("the compiled graph file is corrupt");
+			}
+
+			CsrGraph graph = new CsrGraph(a[0], a[1], a[2], a[3], a[4], a[5]);
+			return new Schedule(symbols, graph, order);
+		}
+	}
+
+	/**
+	 * @param off a section of offsets
+	 * @throws ScheduleException if the offsets don't start at 0 or decrease
+	 */
+	private static void checkOffsets(int[] off) throws ScheduleException {
+		if (off[0] != 0) {
+			throw new ScheduleException("the compiled graph file is corrupt");
+		}
+		for (int i = 1; i < off.length; i++) {
+			if (off[i] < off[i - 1]) {
+				throw new ScheduleException("the compiled graph file is corrupt");
+			}
+		}
+	}
+
+	/**
+	 * @param ids a section of node ids
+	 * @param n   the number of nodes
+	 * @throws ScheduleException if an id isn't from 0 to n - 1
+	 */
+	private static void checkIds(int[] ids, int n) throws ScheduleException {
+		for (int v : ids) {
+			if (v < 0 || v >= n) {
+				throw new ScheduleException("the compiled graph file is corrupt");
+			}
+		}
+	}
+
+	/**
+	 * Checks that the sequence holds every node once, that every edge goes
+	 * forward in it, and that each node's incoming edges are the edges pointing
+	 * to it, with the same values.
+	 *
+	 * @param a     the outgoing offsets, targets, and values, then the incoming
+	 *              offsets, sources, and values
+	 * @param order the topological sequence
+	 * @param n     the number of nodes
+	 * @throws ScheduleException if any of that doesn't hold
+	 */
+	private static void checkEdges(int[][] a, int[] order, int n) throws ScheduleException {
+		int[] outOff = a[0];
+		int[] outTgt = a[1];
+		int[] outW = a[2];
+		int[] inOff = a[3];
+		int[] inSrc = a[4];
+		int[] inW = a[5];
+		int m = outTgt.length;
+		int[] place = new int[n];
+		Arrays.fill(place, -1);
+		for (int i = 0; i < n; i++) {
+			if (place[order[i]] >= 0) {
+				throw new ScheduleException("the compiled graph file is corrupt");
+			}
+			place[order[i]] = i;
+		}
+		for (int u = 0; u < n; u++) {
+			for (int e = outOff[u]; e < outOff[u + 1]; e++) {
+				if (place[outTgt[e]] <= place[u]) {
+					throw new ScheduleException("the compiled graph file is corrupt");
+				}
+			}
+		}
+
+		/* Group the incoming edges by source, which must match each outgoing row */
+		int[] bySrc = new int[n + 1];
+		for (int e = 0; e < m; e++) {
+			bySrc[inSrc[e] + 1]++;
+		}
+		for (int u = 0; u < n; u++) {
+			if (bySrc[u + 1] != outOff[u + 1] - outOff[u]) {
+				throw new ScheduleException("the compiled graph file is corrupt");
+			}
+			bySrc[u + 1] += bySrc[u];
+		}
+		int[] fill = Arrays.copyOf(bySrc, n);
+		int[] edge = new int[m];// incoming edges grouped by source
+		for (int v = 0; v < n; v++) {
+			for (int e = inOff[v]; e < inOff[v + 1]; e++) {
+				edge[fill[inSrc[e]]++] = e;
+			}
+		}
+		int[] dst = new int[m];// the node each incoming edge points to
+		for (int v = 0; v < n; v++) {
+			Arrays.fill(dst, inOff[v], inOff[v + 1], v);
+		}
+
+		int[] mark = new int[n];
+		int[] w = new int[n];
+		Arrays.fill(mark, -1);
+		for (int u = 0; u < n; u++) {
+			for (int e = outOff[u]; e < outOff[u + 1]; e++) {
+				mark[outTgt[e]] = u;
+				w[outTgt[e]] = outW[e];
+			}
+			for (int i = bySrc[u]; i < bySrc[u + 1]; i++) {
+				int v = dst[edge[i]];
+				if (mark[v] != u || w[v] != inW[edge[i]]) {
+					throw new ScheduleException("the compiled graph file is corrupt");
+				}
+				mark[v] = -1;// each outgoing edge matches one incoming edge
+			}
+		}
+	}
+
+	/**
+	 * @param out the stream being written
+	 * @param a   the ints written, in order
+	 * @throws IOException if the stream can't be written
+	 */
+	private static void writeInts(DataOutputStream out, int[] a) throws IOException {
+		for (int v : a) {
+			out.writeInt(v);
+		}
+	}
+
+	/**
+	 * Maps a section of the file and copies it into an int array.
+	 *
+	 * @param ch  the open file
+	 * @param at  the file offset of the section
+	 * @param len the number of ints in the section
+	 * @return the ints in the section
+	 * @throws IOException if the file can't be mapped
+	 */
+	private static int[] readInts(FileChannel ch, long at, int len) throws IOException {
+		int[] a = new int[len];
+		ch.map(FileChannel.MapMode.READ_ONLY, at, 4L * len).asIntBuffer().get(a);
+		return a;
+	}
+}
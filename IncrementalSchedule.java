@@ -0,0 +1,535 @@
+import java.util.Arrays;
+
+/**
+ * A loaded schedule whose edges can be edited, keeping every node's EC, LC and
+ * slack up to date. After an edit, EC values are only rediscovered through the
+ * nodes after the edited edge whose EC actually changes, and LC values only
+ * through the nodes before it, so an edit costs time proportional to what it
+ * changes rather than a full run.
+ * <p>
+ * LC values are kept as each node's longest path to F, its "tail", so a change
+ * in the project duration moves every LC without visiting any node:
+ * LC = EC of F - tail.
+ * <p>
+ * Edits keep the rules of an adjacency matrix: every edge into a node has the
+ * node's duration, and every edge into F is 0. An edge's value can only change
+ * as part of its node's duration, and a new edge must have the duration of the
+ * node it points into, so the values always match a full run of the edited
+ * graph.
+ * <p>
+ * A topological position is kept for every node and repaired on insertion
+ * with the Pearce-Kelly algorithm, which only reorders the nodes between the
+ * two ends of the new edge and rejects edges that would close a cycle.
+ *
+ * @author Aaron Goin
+ */
+public class IncrementalSchedule {
+	private final int n;
+	private final int s;
+	private final int f;
+	private final int[][] outT;
+	private final int[][] outW;
+	private final int[] outN;
+	private final int[][] inS;
+	private final int[][] inW;
+	private final int[] inN;
+
+	private final int[] pos;// each node's place in the topological sequence
+	private final int[] ord;// the node at each place
+	private final int[] eC;
+	private final int[] tail;
+
+	private final PosHeap heap;
+	private final boolean[] mark;
+	private int visited;
+
+	/**
+	 * Copies a graph into editable rows and discovers its EC and LC values.
+	 *
+	 * @param graph the graph
+	 * @param order a topological sequence of the graph, starting at S and ending
+	 *              at F
+	 */
+	public IncrementalSchedule(CsrGraph graph, int[] order) {
+		n = graph.size();
+		s = order[0];
+		f = order[n - 1];
+		outT = new int[n][];
+		outW = new int[n][];
+		outN = new int[n];
+		inS = new int[n][];
+		inW = new int[n][];
+		inN = new int[n];
+		for (int v = 0; v < n; v++) {
+			outN[v] = graph.outDegree(v);
+			outT[v] = new int[Math.max(2, outN[v])];
+			outW[v] = new int[outT[v].length];
+			for (int e = graph.outStart(v), k = 0; e < graph.outEnd(v); e++, k++) {
+				outT[v][k] = graph.outTarget(e);
+				outW[v][k] = graph.outWeight(e);
+			}
+			inN[v] = graph.inDegree(v);
+			inS[v] = new int[Math.max(2, inN[v])];
+			inW[v] = new int[inS[v].length];
+			for (int e = graph.inStart(v), k = 0; e < graph.inEnd(v); e++, k++) {
+				inS[v][k] = graph.inSource(e);
+				inW[v][k] = graph.inWeight(e);
+			}
+		}
+
+		pos = new int[n];
+		ord = order.clone();
+		for (int i = 0; i < n; i++) {
+			pos[ord[i]] = i;
+		}
+		eC = new int[n];
+		tail = new int[n];
+		for (int i = 1; i < n; i++) {
+			eC[ord[i]] = maxIn(ord[i]);
+		}
+		for (int i = n - 2; i > -1; i--) {
+			tail[ord[i]] = maxOut(ord[i]);
+		}
+		heap = new PosHeap(n);
+		mark = new boolean[n];
+	}
+
+	/**
+	 * @param v a node
+	 * @return the EC value of the node
+	 */
+	public int getEC(int v) {
+		return eC[v];
+	}
+
+	/**
+	 * @param v a node
+	 * @return the LC value of the node
+	 */
+	public int getLC(int v) {
+		return eC[f] - tail[v];
+	}
+
+	/**
+	 * @param v a node
+	 * @return the slack time of the node, its LC minus its EC
+	 */
+	public int getSlack(int v) {
+		return getLC(v) - eC[v];
+	}
+
+	/**
+	 * @return the EC value of F
+	 */
+	public int getDuration() {
+		return eC[f];
+	}
+
+	/**
+	 * @return the nodes in the current topological sequence
+	 */
+	public int[] getOrder() {
+		return ord.clone();
+	}
+
+	/**
+	 * @return the number of nodes whose EC or LC was rediscovered by the last edit
+	 */
+	public int getVisited() {
+		return visited;
+	}
+
+	/**
+	 * Changes the value of an existing edge. Every edge into a node has the same
+	 * value, so this is only allowed when the edge is the only one into its node,
+	 * which makes it the same as setDuration().
+	 *
+	 * @param from the node the edge comes from
+	 * @param to   the node the edge points to
+	 * @param w    the new edge value, 0 or more
+	 * @throws IllegalArgumentException if the edge doesn't exist, the value is
+	 *                                  negative, another edge points into the
+	 *                                  same node with a different value, or the
+	 *                                  edge points into F and the value isn't 0
+	 */
+	public void setWeight(int from, int to, int w) {
+		checkNodes(from, to);
+		int o = indexOf(outT[from], outN[from], to);
+		if (o < 0) {
+			throw new IllegalArgumentException("no edge from " + from + " to " + to);
+		}
+		if (w < 0) {
+			throw new IllegalArgumentException("edge values must not be negative");
+		}
+		checkValue(to, w, inN[to] > 1);
+		outW[from][o] = w;
+		inW[to][indexOf(inS[to], inN[to], from)] = w;
+		repair(from, to);
+	}
+
+	/**
+	 * Changes the duration of a node, which is the value of every edge into it.
+	 *
+	 * @param v a node other than S or F
+	 * @param w the new duration, 0 or more
+	 * @throws IllegalArgumentException if the node is S or F or the duration
+	 *                                  is negative
+	 */
+	public void setDuration(int v, int w) {
+		checkNodes(v, v);
+		if (v == s || v == f) {
+			throw new IllegalArgumentException((v == s ? "S" : "F") + " has no duration");
+		}
+		if (w < 0) {
+			throw new IllegalArgumentException("edge values must not be negative");
+		}
+		for (int k = 0; k < inN[v]; k++) {
+			int u = inS[v][k];
+			inW[v][k] = w;
+			outW[u][indexOf(outT[u], outN[u], v)] = w;
+		}
+		repair(inS[v], inN[v], v);
+	}
+
+	/**
+	 * Adds a new edge, reordering the topological sequence if needed.
+	 *
+	 * @param from the node the edge comes from
+	 * @param to   the node the edge points to
+	 * @param w    the edge value, 0 or more
+	 * @throws IllegalArgumentException if the edge exists, points into S, leaves
+	 *                                  F, has a value other than the duration of
+	 *                                  the node it points into, or would close a
+	 *                                  cycle
+	 */
+	public void addEdge(int from, int to, int w) {
+		checkNodes(from, to);
+		if (to == s || from == f) {
+			throw new IllegalArgumentException("no edge may point into S or leave F");
+		}
+		if (w < 0) {
+			throw new IllegalArgumentException("edge values must not be negative");
+		}
+		checkValue(to, w, true);
+		if (indexOf(outT[from], outN[from], to) >= 0) {
+			throw new IllegalArgumentException("an edge from " + from + " to " + to + " already exists");
+		}
+		if (from == to) {
+			throw new IllegalArgumentException("an edge from " + from + " to itself would close a cycle");
+		}
+		if (pos[from] > pos[to]) {
+			reorder(from, to);
+		}
+
+		append(from, to, w);
+		repair(from, to);
+	}
+
+	/**
+	 * Removes an edge.
+	 *
+	 * @param from the node the edge comes from
+	 * @param to   the node the edge points to
+	 * @throws IllegalArgumentException if the edge doesn't exist, or is the only
+	 *                                  adjacent edge of its first node or the only
+	 *                                  predecessor edge of its second
+	 */
+	public void removeEdge(int from, int to) {
+		checkNodes(from, to);
+		int o = indexOf(outT[from], outN[from], to);
+		if (o < 0) {
+			throw new IllegalArgumentException("no edge from " + from + " to " + to);
+		}
+		if (outN[from] == 1 || inN[to] == 1) {
+			throw new IllegalArgumentException("every node but S needs a predecessor, and every node but F an adjacent node");
+		}
+		int i = indexOf(inS[to], inN[to], from);
+		outT[from][o] = outT[from][--outN[from]];
+		outW[from][o] = outW[from][outN[from]];
+		inS[to][i] = inS[to][--inN[to]];
+		inW[to][i] = inW[to][inN[to]];
+		repair(from, to);
+	}
+
+	/**
+	 * Rediscovers EC values forwards from the head of an edited edge, and tails
+	 * backwards from its first node, stopping wherever a value doesn't change.
+	 */
+	private void repair(int from, int to) {
+		repair(new int[] { from }, 1, to);
+	}
+
+	/**
+	 * Rediscovers EC values forwards from the head shared by edited edges, and
+	 * tails backwards from each of their first nodes.
+	 */
+	private void repair(int[] froms, int count, int to) {
+		visited = 0;
+
+		/* Forward cone, in topological order */
+		heap.clear(false);
+		heap.push(to);
+		while (!heap.isEmpty()) {
+			int v = heap.pop();
+			visited++;
+			int ec = v == s ? 0 : maxIn(v);
+			if (ec != eC[v]) {
+				eC[v] = ec;
+				for (int k = 0; k < outN[v]; k++) {
+					heap.push(outT[v][k]);
+				}
+			}
+		}
+
+		/* Backward cone, in reverse topological order */
+		heap.clear(true);
+		for (int i = 0; i < count; i++) {
+			heap.push(froms[i]);
+		}
+		while (!heap.isEmpty()) {
+			int v = heap.pop();
+			visited++;
+			int t = v == f ? 0 : maxOut(v);
+			if (t != tail[v]) {
+				tail[v] = t;
+				for (int k = 0; k < inN[v]; k++) {
+					heap.push(inS[v][k]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Repairs the topological sequence before adding an edge from a later node to
+	 * an earlier one. The nodes reachable from 'to' that come no later than
+	 * 'from', and the nodes reaching 'from' that come no earlier than 'to', are
+	 * the only ones out of place; they swap into each other's positions, keeping
+	 * their own relative order.
+	 *
+	 * @throws IllegalArgumentException if 'to' reaches 'from'
+	 */
+	private void reorder(int from, int to) {
+		int lb = pos[to];
+		int ub = pos[from];
+		int[] fwd = reach(to, ub, true, from);
+		if (fwd == null) {
+			throw new IllegalArgumentException("an edge from " + from + " to " + to + " would close a cycle");
+		}
+		int[] back = reach(from, lb, false, -1);
+
+		int[] places = new int[fwd.length + back.length];
+		for (int i = 0; i < back.length; i++) {
+			back[i] = pos[back[i]];
+			places[i] = back[i];
+		}
+		for (int i = 0; i < fwd.length; i++) {
+			fwd[i] = pos[fwd[i]];
+			places[back.length + i] = fwd[i];
+		}
+		Arrays.sort(back);
+		Arrays.sort(fwd);
+		Arrays.sort(places);
+		for (int i = 0; i < back.length; i++) {
+			back[i] = ord[back[i]];
+		}
+		for (int i = 0; i < fwd.length; i++) {
+			fwd[i] = ord[fwd[i]];
+		}
+		for (int i = 0; i < places.length; i++) {
+			int v = i < back.length ? back[i] : fwd[i - back.length];
+			pos[v] = places[i];
+			ord[places[i]] = v;
+		}
+	}
+
+	/**
+	 * Finds the nodes reachable from a node, only passing through nodes whose
+	 * positions are within a bound.
+	 *
+	 * @param start   the node searched from
+	 * @param bound   the last position (forwards) or first position (backwards)
+	 *                searched
+	 * @param forward true to follow adjacent edges, false to follow predecessors
+	 * @param stop    a node that ends the search if it's reached, or -1
+	 * @return the nodes found, or null if 'stop' was reached
+	 */
+	private int[] reach(int start, int bound, boolean forward, int stop) {
+		int[] found = new int[16];
+		int count = 0;
+		int[] stack = new int[16];
+		int top = 0;
+		stack[top++] = start;
+		mark[start] = true;
+		boolean hit = false;
+		while (top > 0 && !hit) {
+			int v = stack[--top];
+			if (count == found.length) {
+				found = Arrays.copyOf(found, count * 2);
+			}
+			found[count++] = v;
+			int deg = forward ? outN[v] : inN[v];
+			for (int k = 0; k < deg; k++) {
+				int t = forward ? outT[v][k] : inS[v][k];
+				if (t == stop) {
+					hit = true;
+					break;
+				}
+				if (!mark[t] && (forward ? pos[t] <= bound : pos[t] >= bound)) {
+					mark[t] = true;
+					if (top == stack.length) {
+						stack = Arrays.copyOf(stack, top * 2);
+					}
+					stack[top++] = t;
+				}
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			mark[found[i]] = false;
+		}
+		for (int i = 0; i < top; i++) {
+			mark[stack[i]] = false;
+		}
+		return hit ? null : Arrays.copyOf(found, count);
+	}
+
+	/**
+	 * Adds an edge to both rows it belongs in.
+	 */
+	private void append(int from, int to, int w) {
+		if (outN[from] == outT[from].length) {
+			outT[from] = Arrays.copyOf(outT[from], outN[from] * 2);
+			outW[from] = Arrays.copyOf(outW[from], outN[from] * 2);
+		}
+		outT[from][outN[from]] = to;
+		outW[from][outN[from]++] = w;
+		if (inN[to] == inS[to].length) {
+			inS[to] = Arrays.copyOf(inS[to], inN[to] * 2);
+			inW[to] = Arrays.copyOf(inW[to], inN[to] * 2);
+		}
+		inS[to][inN[to]] = from;
+		inW[to][inN[to]++] = w;
+	}
+
+	/**
+	 * @return the maximum of each predecessor's EC plus the edge between them
+	 */
+	private int maxIn(int v) {
+		int max = 0;
+		for (int k = 0; k < inN[v]; k++) {
+			max = Math.max(max, eC[inS[v][k]] + inW[v][k]);
+		}
+		return max;
+	}
+
+	/**
+	 * @return the maximum of each adjacent node's tail plus the edge between them
+	 */
+	private int maxOut(int v) {
+		int max = 0;
+		for (int k = 0; k < outN[v]; k++) {
+			max = Math.max(max, tail[outT[v][k]] + outW[v][k]);
+		}
+		return max;
+	}
+
+	/**
+	 * @param to     the node an edge points into
+	 * @param w      the edge's value
+	 * @param shared true if the node has other edges into it that keep their
+	 *               value
+	 * @throws IllegalArgumentException if the node is F and the value isn't 0, or
+	 *                                  the value isn't the node's duration
+	 */
+	private void checkValue(int to, int w, boolean shared) {
+		if (to == f && w != 0) {
+			throw new IllegalArgumentException("every edge into F must be 0");
+		}
+		if (shared && w != inW[to][0]) {
+			throw new IllegalArgumentException("every edge into " + to + " must be " + inW[to][0]
+					+ "; change its duration with setDuration()");
+		}
+	}
+
+	/**
+	 * @throws IllegalArgumentException if either node isn't in the graph
+	 */
+	private void checkNodes(int from, int to) {
+		if (from < 0 || from >= n || to < 0 || to >= n) {
+			throw new IllegalArgumentException("no node " + (from < 0 || from >= n ? from : to));
+		}
+	}
+
+	/**
+	 * @return the index of a value in the first 'len' entries of an array, or -1
+	 */
+	private static int indexOf(int[] a, int len, int val) {
+		for (int i = 0; i < len; i++) {
+			if (a[i] == val) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * A binary heap of nodes ordered by topological position, earliest first or
+	 * latest first, which ignores nodes that are already queued.
+	 */
+	private class PosHeap {
+		private final int[] a;
+		private final boolean[] queued;
+		private int size;
+		private boolean latest;
+
+		PosHeap(int n) {
+			a = new int[n];
+			queued = new boolean[n];
+		}
+
+		void clear(boolean latestFirst) {
+			latest = latestFirst;
+			size = 0;
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		void push(int v) {
+			if (queued[v]) {
+				return;
+			}
+			queued[v] = true;
+			int i = size++;
+			while (i > 0 && before(v, a[(i - 1) / 2])) {
+				a[i] = a[(i - 1) / 2];
+				i = (i - 1) / 2;
+			}
+			a[i] = v;
+		}
+
+		int pop() {
+			int top = a[0];
+			queued[top] = false;
+			int v = a[--size];
+			int i = 0;
+			while (2 * i + 1 < size) {
+				int c = 2 * i + 1;
+				if (c + 1 < size && before(a[c + 1], a[c])) {
+					c++;
+				}
+				if (!before(a[c], v)) {
+					break;
+				}
+				a[i] = a[c];
+				i = c;
+			}
+			a[i] = v;
+			return top;
+		}
+
+		private boolean before(int x, int y) {
+			return latest ? pos[x] > pos[y] : pos[x] < pos[y];
+		}
+	}
+}
@@ -0,0 +1,162 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Groups a topological sequence into dependency levels, where a node's level is
+ * one more than the highest level of its predecessors, and discovers EC and LC
+ * values one level at a time. No two nodes in a level depend on each other, so
+ * each level is split across a fork-join pool; levels narrower than THRESHOLD
+ * are swept on the calling thread, since forking them costs more than it
+ * saves.
+ * <p>
+ * Wide schedules (many independent activities per level) scale with the
+ * number of cores, while chains stay sequential and only pay for the level
+ * grouping.
+ *
+ * @author Aaron Goin
+ */
+public class LevelSweep {
+	static final int THRESHOLD = 4096;// the most nodes swept by one task
+
+	private final CsrGraph graph;
+	private final int[] byLevel;// nodes sorted by level
+	private final int[] levelOff;// where each level starts in byLevel
+
+	/**
+	 * @param graph the graph being swept
+	 * @param order a topological sequence of the graph
+	 */
+	public LevelSweep(CsrGraph graph, int[] order) {
+		this.graph = graph;
+		int n = order.length;
+		int[] level = new int[n];
+		int levels = 0;
+		for (int v : order) {
+			int l = 0;
+			for (int e = graph.inStart(v); e < graph.inEnd(v); e++) {
+				l = Math.max(l, level[graph.inSource(e)] + 1);
+			}
+			level[v] = l;
+			levels = Math.max(levels, l + 1);
+		}
+
+		/* Counting sort by level, keeping topological order within a level */
+		levelOff = new int[levels + 1];
+		for (int v = 0; v < n; v++) {
+			levelOff[level[v] + 1]++;
+		}
+		for (int l = 0; l < levels; l++) {
+			levelOff[l + 1] += levelOff[l];
+		}
+		byLevel = new int[n];
+		int[] pos = new int[levels];
+		for (int v : order) {
+			byLevel[levelOff[level[v]] + pos[level[v]]++] = v;
+		}
+	}
+
+	/**
+	 * @return the number of levels
+	 */
+	public int levels() {
+		return levelOff.length - 1;
+	}
+
+	/**
+	 * @return the number of nodes in the widest level
+	 */
+	public int width() {
+		int max = 0;
+		for (int l = 0; l < levels(); l++) {
+			max = Math.max(max, levelOff[l + 1] - levelOff[l]);
+		}
+		return max;
+	}
+
+	/**
+	 * Discovers the EC value of every node, a level at a time from S.
+	 *
+	 * @param eC   the array the EC values are stored in
+	 * @param pool the pool wide levels are split across
+	 */
+	public void discoverEC(int[] eC, ForkJoinPool pool) {
+		for (int l = 0; l < levels(); l++) {
+			sweep(eC, null, levelOff[l], levelOff[l + 1], pool);
+		}
+	}
+
+	/**
+	 * Discovers the LC value of every node, a level at a time from F, whose LC is
+	 * its EC.
+	 *
+	 * @param eC   the discovered EC values
+	 * @param lC   the array the LC values are stored in
+	 * @param pool the pool wide levels are split across
+	 */
+	public void discoverLC(int[] eC, int[] lC, ForkJoinPool pool) {
+		int f = byLevel[byLevel.length - 1];
+		lC[f] = eC[f];
+		for (int l = levels() - 2; l > -1; l--) {
+			sweep(null, lC, levelOff[l], levelOff[l + 1], pool);
+		}
+	}
+
+	/**
+	 * Sweeps part of a level, forking when it is wider than THRESHOLD.
+	 *
+	 * @param eC the EC values, when sweeping forwards, otherwise null
+	 * @param lC the LC values, when sweeping backwards
+	 * @param lo the index in byLevel the part starts at
+	 * @param hi the index in byLevel after the part
+	 */
+	private void sweep(int[] eC, int[] lC, int lo, int hi, ForkJoinPool pool) {
+		if (hi - lo <= THRESHOLD) {
+			sweepRange(eC, lC, lo, hi);
+		} else {
+			pool.invoke(new LevelTask(eC, lC, lo, hi));
+		}
+	}
+
+	/**
+	 * Discovers the EC or LC value of each node in part of a level.
+	 */
+	private void sweepRange(int[] eC, int[] lC, int lo, int hi) {
+		if (eC != null) {
+			for (int i = lo; i < hi; i++) {
+				eC[byLevel[i]] = graph.maxIn(eC, byLevel[i]);
+			}
+		} else {
+			for (int i = lo; i < hi; i++) {
+				lC[byLevel[i]] = graph.minOut(lC, byLevel[i]);
+			}
+		}
+	}
+
+	/**
+	 * Splits part of a level in half until each half is at most THRESHOLD nodes.
+	 */
+	private class LevelTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int[] eC;
+		private final int[] lC;
+		private final int lo;
+		private final int hi;
+
+		LevelTask(int[] eC, int[] lC, int lo, int hi) {
+			this.eC = eC;
+			this.lC = lC;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo <= THRESHOLD) {
+				sweepRange(eC, lC, lo, hi);
+			} else {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new LevelTask(eC, lC, lo, mid), new LevelTask(eC, lC, mid, hi));
+			}
+		}
+	}
+}
@@ -0,0 +1,284 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Lists the paths from S to F of a computed schedule, longest first, so the
+ * critical paths come first and the near-critical ones follow in rank order.
+ * <p>
+ * The paths are found with the recursive enumeration algorithm of Jimenez and
+ * Marzal, run on longest instead of shortest paths. The longest path into every
+ * node is already known from its EC value, and the j-th longest path into a node
+ * is some predecessor's i-th longest path plus the edge between them. Each node
+ * keeps a heap of these candidates, which is only built when a path past its
+ * first is asked for, so finding k paths takes O(m + k L log d) time, where L
+ * is the number of nodes on a path and d the most predecessors of a node,
+ * instead of walking every path.
+ *
+ * @author Aaron Goin
+ */
+public class LongestPaths {
+	private final ScheduleResult result;
+	private final CsrGraph graph;
+	private final int s;
+	private final int f;
+
+	/* The i-th longest path into v ends with edge[v][i], after the rank[v][i]-th path into its source */
+	private final int[][] edge;
+	private final int[][] rank;
+	private final int[][] len;
+	private final int[] count;
+	private final boolean[] done;// no more paths into the node
+	private final PriorityQueue<int[]>[] cand;// {length, edge, rank}, longest first
+	private int found;// paths into F handed out by next()
+
+	/**
+	 * @param result the computed schedule whose paths are listed
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public LongestPaths(ScheduleResult result) {
+		this.result = result;
+		this.graph = result.getSchedule().graph();
+		this.s = result.nodeAt(0);
+		this.f = result.nodeAt(result.size() - 1);
+		int n = graph.size();
+		edge = new int[n][];
+		rank = new int[n][];
+		len = new int[n][];
+		count = new int[n];
+		done = new boolean[n];
+		cand = new PriorityQueue[n];
+
+		/* S has one path, with no edges */
+		add(s, -1, -1, 0);
+		done[s] = true;
+	}
+
+	/**
+	 * @return the next longest path from S to F, or null once every path has been
+	 *         returned
+	 */
+	public Path next() {
+		if (!reach(f, found + 1)) {
+			return null;
+		}
+		found++;
+		return path(found - 1);
+	}
+
+	/**
+	 * @param k the most paths returned
+	 * @return the k longest paths from S to F, or every path if there are fewer,
+	 *         longest first
+	 */
+	public List<Path> top(int k) {
+		ArrayList<Path> paths = new ArrayList<Path>();
+		for (int i = 0; i < k && reach(f, i + 1); i++) {
+			paths.add(path(i));
+		}
+		return paths;
+	}
+
+	/**
+	 * @param limit the most paths returned
+	 * @return the critical paths, whose length is the project duration, up to the
+	 *         limit
+	 */
+	public List<Path> critical(int limit) {
+		ArrayList<Path> paths = new ArrayList<Path>();
+		for (int i = 0; i < limit && reach(f, i + 1) && len[f][i] == result.getDuration(); i++) {
+			paths.add(path(i));
+		}
+		return paths;
+	}
+
+	/**
+	 * Counts the critical paths without listing them, since there can be
+	 * exponentially many. An edge is on a critical path exactly when the EC of its
+	 * source plus its value is the LC of its target.
+	 *
+	 * @return the number of critical paths, or Long.MAX_VALUE if there are more
+	 */
+	public long countCritical() {
+		long[] paths = new long[graph.size()];
+		paths[s] = 1;
+		for (int i = 1; i < result.size(); i++) {
+			int v = result.nodeAt(i);
+			long c = 0;
+			for (int e = graph.inStart(v); e < graph.inEnd(v); e++) {
+				int u = graph.inSource(e);
+				if (result.getEC(u) + graph.inWeight(e) == result.getLC(v)) {
+					c += paths[u];
+					if (c < 0) {
+						c = Long.MAX_VALUE;
+					}
+				}
+			}
+			paths[v] = c;
+		}
+		return paths[f];
+	}
+
+	/**
+	 * Makes sure the k-th longest path into a node is known, unless there are
+	 * fewer than k. The recursion of the algorithm, where the next path into v
+	 * needs the next path into the predecessor of its last path, runs on an
+	 * explicit stack so long chains can't overflow the call stack.
+	 *
+	 * @param v the node
+	 * @param k the rank of the path, from 1
+	 * @return true if the node has at least k paths
+	 */
+	private boolean reach(int v, int k) {
+		int[] stackV = new int[16];
+		int[] stackK = new int[16];
+		int top = 0;
+		stackV[0] = v;
+		stackK[0] = k;
+		while (top >= 0) {
+			int x = stackV[top];
+			int want = stackK[top];
+			if (count[x] == 0) {
+				first(x);
+			}
+			if (count[x] >= want || done[x]) {
+				top--;
+				continue;
+			}
+
+			/* The next path into x needs the next path into the source of its last one */
+			int i = count[x] - 1;
+			int e = edge[x][i];
+			int u = graph.inSource(e);
+			int j = rank[x][i] + 1;
+			if (count[u] <= j && !done[u]) {
+				if (++top == stackV.length) {
+					stackV = Arrays.copyOf(stackV, top * 2);
+					stackK = Arrays.copyOf(stackK, top * 2);
+				}
+				stackV[top] = u;
+				stackK[top] = j + 1;
+				continue;
+			}
+			if (cand[x] == null) {
+				cand[x] = new PriorityQueue<int[]>((a, b) -> Integer.compare(b[0], a[0]));
+				for (int o = graph.inStart(x); o < graph.inEnd(x); o++) {
+					if (o != e) {
+						cand[x].add(new int[] { result.getEC(graph.inSource(o)) + graph.inWeight(o), o, 0 });
+					}
+				}
+			}
+			if (count[u] > j) {
+				cand[x].add(new int[] { len[u][j] + graph.inWeight(e), e, j });
+			}
+			int[] c = cand[x].poll();
+			if (c == null) {
+				done[x] = true;
+			} else {
+				add(x, c[1], c[2], c[0]);
+				if (count[graph.inSource(c[1])] == 0) {
+					first(graph.inSource(c[1]));
+				}
+			}
+		}
+		return count[v] >= k;
+	}
+
+	/**
+	 * Stores the longest path into a node, and into every node before it on that
+	 * path, each through the first predecessor whose EC plus the edge between them
+	 * is the node's EC.
+	 */
+	private void first(int v) {
+		while (count[v] == 0) {
+			int eC = result.getEC(v);
+			int e = graph.inStart(v);
+			while (result.getEC(graph.inSource(e)) + graph.inWeight(e) != eC) {
+				e++;
+			}
+			add(v, e, 0, eC);
+			v = graph.inSource(e);
+		}
+	}
+
+	/**
+	 * Appends the next longest path into a node.
+	 *
+	 * @param v the node
+	 * @param e the last edge of the path, or -1 for S
+	 * @param r the rank, from 0, of the path into the edge's source
+	 * @param l the length of the path
+	 */
+	private void add(int v, int e, int r, int l) {
+		if (edge[v] == null) {
+			edge[v] = new int[2];
+			rank[v] = new int[2];
+			len[v] = new int[2];
+		} else if (count[v] == edge[v].length) {
+			edge[v] = Arrays.copyOf(edge[v], count[v] * 2);
+			rank[v] = Arrays.copyOf(rank[v], count[v] * 2);
+			len[v] = Arrays.copyOf(len[v], count[v] * 2);
+		}
+		edge[v][count[v]] = e;
+		rank[v][count[v]] = r;
+		len[v][count[v]] = l;
+		count[v]++;
+	}
+
+	/**
+	 * Walks the i-th path into F back to S.
+	 */
+	private Path path(int i) {
+		ArrayList<Integer> back = new ArrayList<Integer>();
+		int v = f;
+		int r = i;
+		while (v != s) {
+			back.add(v);
+			int e = edge[v][r];
+			r = rank[v][r];
+			v = graph.inSource(e);
+		}
+		back.add(s);
+
+		String[] names = new String[back.size()];
+		for (int k = 0; k < names.length; k++) {
+			names[k] = result.getName(back.get(names.length - 1 - k));
+		}
+		return new Path(len[f][i], names);
+	}
+
+	/**
+	 * A path from S to F and its length, the sum of its edges.
+	 */
+	public static class Path {
+		private final int length;
+		private final String[] nodes;
+
+		Path(int length, String[] nodes) {
+			this.length = length;
+			this.nodes = nodes;
+		}
+
+		/**
+		 * @return the length of the path
+		 */
+		public int getLength() {
+			return length;
+		}
+
+		/**
+		 * @return the names of the nodes on the path, from S to F
+		 */
+		public List<String> getNodes() {
+			return Arrays.asList(nodes);
+		}
+
+		/**
+		 * The length, then the nodes from S to F.
+		 */
+		public String toString() {
+			return length + "   " + String.join(" ", nodes);
+		}
+	}
+}
@@ -0,0 +1,569 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads an adjacency matrix text file by memory-mapping it and decoding the
+ * integers byte by byte, checking the S and F rules and collecting the edges as
+ * each row is decoded, so the matrix itself is never stored or scanned again.
+ * Only the node names are turned into Strings.
+ * <p>
+ * Once the header line is read, the rows are independent, so the rest of the
+ * file is split at newlines into chunks that are mapped and parsed by separate
+ * threads. Each thread first counts the lines in its chunk so every chunk
+ * knows the number of its first row, then decodes and checks its rows into its
+ * own edge list. The first value of each column in each chunk is kept, so once
+ * every chunk is done, columns are checked across chunks in O(n) per chunk.
+ *
+ * @author Aaron Goin
+ */
+public class MatrixParser {
+	private static final long WINDOW = 1L << 30;// the largest chunk mapped at once
+	private static final long MIN_CHUNK = 1L << 20;// smaller files are parsed on one thread
+
+	private final String filename;
+	private SymbolTable symbols;
+	private String[] horiz;
+	private int sIdx;
+	private int fIdx;
+	private CsrGraph graph;
+
+	/**
+	 * A parser for a file, which isn't read until parse() is called.
+	 *
+	 * @param filename the name of the text file that contains an adjacency matrix
+	 */
+	public MatrixParser(String filename) {
+		this.filename = filename;
+	}
+
+	/**
+	 * Reads the header line and every row of the matrix, using a thread per
+	 * available processor for large files.
+	 *
+	 * @throws IOException              if the file can't be read
+	 * @throws IllegalArgumentException if the matrix isn't formatted correctly,
+	 *                                  with the reason in its message
+	 */
+	public void parse() throws IOException {
+		parse(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Reads the header line and every row of the matrix.
+	 *
+	 * @param threads the most threads used to parse rows
+	 * @throws IOException              if the file can't be read
+	 * @throws IllegalArgumentException if the matrix isn't formatted correctly,
+	 *                                  with the reason of the first bad row in its
+	 *                                  message
+	 */
+	public void parse(int threads) throws IOException {
+		try (FileChannel ch = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			long size = ch.size();
+			long dataStart = readHeader(ch, size);
+			int n = horiz.length;
+
+			long[] bounds = splitChunks(ch, dataStart, size, threads);
+			int chunks = bounds.length - 1;
+			MappedByteBuffer[] bufs = new MappedByteBuffer[chunks];
+			for (int c = 0; c < chunks; c++) {
+				if (bounds[c + 1] - bounds[c] > WINDOW) {
+					throw new IllegalArgumentException("a line is longer than " + WINDOW + " bytes");
+				}
+				bufs[c] = ch.map(FileChannel.MapMode.READ_ONLY, bounds[c], bounds[c + 1] - bounds[c]);
+			}
+
+			/* Count lines, so each chunk knows its first row */
+			int[] firstRow = new int[chunks + 1];
+			ArrayList<Callable<Integer>> counts = new ArrayList<Callable<Integer>>();
+			for (int c = 0; c < chunks; c++) {
+				MappedByteBuffer b = bufs[c];
+				counts.add(() -> countLines(b));
+			}
+			ArrayList<Integer> lineCounts = runAll(counts, threads);
+			for (int c = 0; c < chunks; c++) {
+				firstRow[c + 1] = firstRow[c] + lineCounts.get(c);
+			}
+
+			/* Parse and check every chunk's rows into its own edges */
+			ArrayList<Callable<Rows>> parses = new ArrayList<Callable<Rows>>();
+			for (int c = 0; c < chunks; c++) {
+				MappedByteBuffer b = bufs[c];
+				int row = firstRow[c];
+				parses.add(() -> parseChunk(b, row));
+			}
+			ArrayList<Rows> results = runAll(parses, threads);
+
+			/* Only blank lines may follow a blank line */
+			int firstBlank = firstRow[chunks];
+			int lastRow = -1;
+			for (Rows r : results) {
+				firstBlank = Math.min(firstBlank, r.firstBlank);
+				lastRow = Math.max(lastRow, r.lastRow);
+			}
+			if (lastRow > firstBlank) {
+				throw new IllegalArgumentException("row " + (lastRow + 1) + ": text after a blank line");
+			}
+			if (lastRow >= n) {
+				throw new IllegalArgumentException("row " + (n + 1) + ": more rows than nodes");
+			}
+			if (firstBlank < n) {
+				throw new IllegalArgumentException("row " + (firstBlank + 1) + ": fewer rows than nodes");
+			}
+			graph = merge(results);
+		}
+	}
+
+	/**
+	 * @return the node names, with ids in header order
+	 */
+	public SymbolTable symbols() {
+		return symbols;
+	}
+
+	/**
+	 * @return the graph of the matrix, with an edge for every non-negative value,
+	 *         in row order
+	 */
+	public CsrGraph graph() {
+		return graph;
+	}
+
+	/**
+	 * Parses one row of the matrix: the row's node name followed by exactly one
+	 * integer per node, each -1 or more.
+	 *
+	 * @param b     the bytes holding the row
+	 * @param start the index of the first byte of the row
+	 * @param end   the index of the newline ending the row, or the end of the
+	 *              bytes
+	 * @param row   the index of the row, used in error messages
+	 * @param name  the node name the row must start with
+	 * @param into  the array the row's values are decoded into
+	 */
+	private static void parseRow(ByteBuffer b, int start, int end, int row, String name, int[] into) {
+		int i = skipSpaces(b, start, end);
+		int nameEnd = i;
+		while (nameEnd < end && !isSpace(b.get(nameEnd))) {
+			nameEnd++;
+		}
+		if (!sameName(b, i, nameEnd, name)) {
+			throw new IllegalArgumentException("row " + (row + 1) + ": expected node " + name);
+		}
+
+		int col = 0;
+		i = skipSpaces(b, nameEnd, end);
+		while (i < end) {
+			boolean neg = false;
+			if (b.get(i) == '-') {
+				neg = true;
+				i++;
+			}
+			int digits = i;
+			long val = 0;
+			while (i < end && b.get(i) >= '0' && b.get(i) <= '9') {
+				val = val * 10 + (b.get(i++) - '0');
+				if (val > Integer.MAX_VALUE) {
+					throw new IllegalArgumentException("row " + (row + 1) + ", column " + (col + 1) + ": value too large");
+				}
+			}
+			if (i == digits || (i < end && !isSpace(b.get(i)))) {
+				throw new IllegalArgumentException("row " + (row + 1) + ", column " + (col + 1) + ": not an integer");
+			}
+			if (neg) {
+				val = -val;
+			}
+			if (val < -1) {
+				throw new IllegalArgumentException("row " + (row + 1) + ", column " + (col + 1) + ": less than -1");
+			}
+			if (col == into.length) {
+				throw new IllegalArgumentException("row " + (row + 1) + ": more than " + into.length + " values");
+			}
+			into[col++] = (int) val;
+			i = skipSpaces(b, i, end);
+		}
+		if (col != into.length) {
+			throw new IllegalArgumentException("row " + (row + 1) + ": " + col + " values instead of " + into.length);
+		}
+	}
+
+	/**
+	 * Parses and checks every line of a chunk as a row, starting from a given row
+	 * number.
+	 *
+	 * @param b     the mapped chunk
+	 * @param first the row number of the chunk's first line
+	 * @return the chunk's edges and the first value of each of its columns
+	 */
+	private Rows parseChunk(MappedByteBuffer b, int first) {
+		int n = horiz.length;
+		Rows rows = new Rows(n);
+		int[] vals = new int[n];
+		int firstBlank = Integer.MAX_VALUE;
+		int lastRow = -1;
+		int row = first;
+		int start = 0;
+		int lim = b.limit();
+		while (start < lim) {
+			int end = indexOfNewline(b, start);
+			if (skipSpaces(b, start, end) == end) {
+				firstBlank = Math.min(firstBlank, row);
+			} else {
+				/* Extra rows are reported once every chunk is done */
+				if (row < n) {
+					parseRow(b, start, end, row, horiz[row], vals);
+					checkRow(rows, row, vals);
+				}
+				lastRow = row;
+			}
+			row++;
+			start = end + 1;
+		}
+		rows.firstBlank = firstBlank;
+		rows.lastRow = lastRow;
+		return rows;
+	}
+
+	/**
+	 * Checks a decoded row against the S and F rules and the values already seen
+	 * in its chunk, and adds an edge for each non-negative value.
+	 *
+	 * @param rows the chunk's edges and column values
+	 * @param row  the index of the row
+	 * @param vals the row's values
+	 */
+	private void checkRow(Rows rows, int row, int[] vals) {
+		for (int j = 0; j < vals.length; j++) {
+			int val = vals[j];
+			if (val < 0) {
+				continue;
+			}
+			if (j == sIdx) {
+				throw new IllegalArgumentException("row " + (row + 1) + ": every value in the S column must be -1");
+			}
+			if (row == fIdx) {
+				throw new IllegalArgumentException("column " + (j + 1) + ": every value in the F row must be -1");
+			}
+
+			/* Check that each non neg value in a column is equal (adjs) */
+			if (rows.colVal[j] == -1) {
+				rows.colVal[j] = val;
+				rows.colRow[j] = row;
+			} else if (rows.colVal[j] != val) {
+				throw new IllegalArgumentException("row " + (row + 1) + ", column " + (j + 1)
+						+ ": every value in a column must be equal");
+			}
+			rows.add(row, j, val);
+			if (row == sIdx) {
+				rows.sRow = true;
+			}
+		}
+	}
+
+	/**
+	 * Checks that each column has one value across every chunk, that the S row
+	 * has a non-negative value and the F column a 0, and packs every chunk's edges
+	 * into one graph.
+	 *
+	 * @param results every chunk's rows, in file order
+	 * @return the graph of the matrix
+	 */
+	private CsrGraph merge(ArrayList<Rows> results) {
+		int n = horiz.length;
+		int[] colVal = new int[n];
+		Arrays.fill(colVal, -1);
+		boolean sRow = false;
+		int m = 0;
+		for (Rows r : results) {
+			for (int j = 0; j < n; j++) {
+				if (r.colVal[j] == -1) {
+					continue;
+				}
+				if (colVal[j] == -1) {
+					colVal[j] = r.colVal[j];
+				} else if (colVal[j] != r.colVal[j]) {
+					throw new IllegalArgumentException("row " + (r.colRow[j] + 1) + ", column " + (j + 1)
+							+ ": every value in a column must be equal");
+				}
+			}
+			sRow |= r.sRow;
+			m += r.m;
+		}
+		if (!sRow) {
+			throw new IllegalArgumentException("row " + (sIdx + 1) + ": the S row needs a non-negative value");
+		}
+		if (colVal[fIdx] != 0) {
+			throw new IllegalArgumentException("the F column needs a 0");
+		}
+
+		if (results.size() == 1) {
+			Rows r = results.get(0);
+			return new CsrGraph(n, r.src, r.dst, r.w, r.m);
+		}
+		int[] src = new int[m];
+		int[] dst = new int[m];
+		int[] w = new int[m];
+		int at = 0;
+		for (Rows r : results) {
+			System.arraycopy(r.src, 0, src, at, r.m);
+			System.arraycopy(r.dst, 0, dst, at, r.m);
+			System.arraycopy(r.w, 0, w, at, r.m);
+			at += r.m;
+		}
+		return new CsrGraph(n, src, dst, w, m);
+	}
+
+	/**
+	 * Reads and interns the whitespace separated names on the first line.
+	 *
+	 * @param ch   the open file
+	 * @param size the size of the file
+	 * @return the file offset after the header line
+	 * @throws IOException if the file can't be mapped
+	 */
+	private long readHeader(FileChannel ch, long size) throws IOException {
+		MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(WINDOW, size));
+		if (b.limit() == 0) {
+			throw new IllegalArgumentException("the file is empty");
+		}
+		int lineEnd = indexOfNewline(b, 0);
+		if (lineEnd == b.limit() && b.limit() < size) {
+			throw new IllegalArgumentException("a line is longer than " + WINDOW + " bytes");
+		}
+
+		ArrayList<String> names = new ArrayList<String>();
+		int i = skipSpaces(b, 0, lineEnd);
+		while (i < lineEnd) {
+			int j = i;
+			while (j < lineEnd && !isSpace(b.get(j))) {
+				j++;
+			}
+			byte[] bytes = new byte[j - i];
+			b.get(i, bytes);
+			names.add(new String(bytes, StandardCharsets.UTF_8));
+			i = skipSpaces(b, j, lineEnd);
+		}
+		horiz = names.toArray(new String[0]);
+
+		symbols = new SymbolTable(horiz.length);
+		for (int k = 0; k < horiz.length; k++) {
+			/* Repeated names would collapse into one id */
+			if (symbols.intern(horiz[k]) != k) {
+				throw new IllegalArgumentException("header: repeated node name " + horiz[k]);
+			}
+		}
+		sIdx = symbols.id("S");
+		fIdx = symbols.id("F");
+		if (sIdx < 0 || fIdx < 0) {
+			throw new IllegalArgumentException("header: S and F must both be nodes");
+		}
+		return Math.min(size, lineEnd + 1L);
+	}
+
+	/**
+	 * Splits the rows of the file into chunks that start and end at newlines,
+	 * about one per thread but none smaller than MIN_CHUNK or larger than half a
+	 * WINDOW unless a line is that long.
+	 *
+	 * @return the file offsets where the chunks start, followed by the file size
+	 * @throws IOException if the file can't be mapped
+	 */
+	private static long[] splitChunks(FileChannel ch, long start, long size, int threads) throws IOException {
+		long len = size - start;
+		long chunks = Math.max(1, Math.min(threads, len / MIN_CHUNK));
+		chunks = Math.max(chunks, (len + WINDOW / 2 - 1) / (WINDOW / 2));
+		long target = (len + chunks - 1) / Math.max(1, chunks);
+
+		ArrayList<Long> bounds = new ArrayList<Long>();
+		bounds.add(start);
+		long at = start;
+		while (at < size) {
+			long next = Math.min(size, at + target);
+			if (next < size) {
+				next = afterNewline(ch, next, size);
+			}
+			bounds.add(next);
+			at = next;
+		}
+		if (bounds.size() == 1) {
+			bounds.add(size);
+		}
+
+		long[] ret = new long[bounds.size()];
+		for (int i = 0; i < ret.length; i++) {
+			ret[i] = bounds.get(i);
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the file offset after the first newline at or after from, or the
+	 *         size of the file if there is none
+	 * @throws IOException if the file can't be mapped
+	 */
+	private static long afterNewline(FileChannel ch, long from, long size) throws IOException {
+		while (from < size) {
+			MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY, from, Math.min(1 << 16, size - from));
+			int i = indexOfNewline(b, 0);
+			if (i < b.limit()) {
+				return from + i + 1;
+			}
+			from += b.limit();
+		}
+		return size;
+	}
+
+	/**
+	 * Runs tasks on a pool of threads, or on this thread if there is only one.
+	 * When tasks fail, the failure of the earliest task is thrown.
+	 *
+	 * @return the results of the tasks, in order
+	 */
+	private static <T> ArrayList<T> runAll(ArrayList<Callable<T>> tasks, int threads) throws IOException {
+		ArrayList<T> results = new ArrayList<T>();
+		if (tasks.size() == 1 || threads < 2) {
+			for (Callable<T> t : tasks) {
+				try {
+					results.add(t.call());
+				} catch (RuntimeException | IOException e) {
+					throw e;
+				} catch (Exception e) {
+					throw new IOException(e);
+				}
+			}
+			return results;
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+		try {
+			for (Future<T> f : pool.invokeAll(tasks)) {
+				results.add(f.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+		return results;
+	}
+
+	/**
+	 * @return the number of lines in the bytes, counting a last line without a
+	 *         newline
+	 */
+	private static int countLines(ByteBuffer b) {
+		int lim = b.limit();
+		int lines = 0;
+		for (int i = 0; i < lim; i++) {
+			if (b.get(i) == '\n') {
+				lines++;
+			}
+		}
+		if (lim > 0 && b.get(lim - 1) != '\n') {
+			lines++;
+		}
+		return lines;
+	}
+
+	/**
+	 * @param from the index to start looking from
+	 * @return the index of the next newline, or the limit of the bytes if there
+	 *         isn't one
+	 */
+	private static int indexOfNewline(ByteBuffer b, int from) {
+		int lim = b.limit();
+		for (int i = from; i < lim; i++) {
+			if (b.get(i) == '\n') {
+				return i;
+			}
+		}
+		return lim;
+	}
+
+	/**
+	 * @return the index of the first non-whitespace byte from i, or end
+	 */
+	private static int skipSpaces(ByteBuffer b, int i, int end) {
+		while (i < end && isSpace(b.get(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * @return true if the byte is a space, tab, or carriage return
+	 */
+	private static boolean isSpace(byte c) {
+		return c == ' ' || c == '\t' || c == '\r';
+	}
+
+	/**
+	 * Compares a name in the file to a String without decoding the bytes.
+	 *
+	 * @return true if the bytes from start to end spell the name
+	 */
+	private static boolean sameName(ByteBuffer b, int start, int end, String name) {
+		byte[] want = name.getBytes(StandardCharsets.UTF_8);
+		if (end - start != want.length) {
+			return false;
+		}
+		for (int i = 0; i < want.length; i++) {
+			if (b.get(start + i) != want[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The edges of one chunk's rows, in row order, with the first non-negative
+	 * value of each column and the row it was found in.
+	 */
+	private static class Rows {
+		private int[] src = new int[16];
+		private int[] dst = new int[16];
+		private int[] w = new int[16];
+		private int m;
+		private final int[] colVal;// -1 until a value is found
+		private final int[] colRow;
+		private boolean sRow;// the S row is in the chunk and has a non-negative value
+		private int firstBlank;// the chunk's first blank line, or Integer.MAX_VALUE
+		private int lastRow;// the chunk's last non-blank line, or -1
+
+		Rows(int n) {
+			colVal = new int[n];
+			colRow = new int[n];
+			Arrays.fill(colVal, -1);
+		}
+
+		void add(int from, int to, int weight) {
+			if (m == src.length) {
+				src = Arrays.copyOf(src, m * 2);
+				dst = Arrays.copyOf(dst, m * 2);
+				w = Arrays.copyOf(w, m * 2);
+			}
+			src[m] = from;
+			dst[m] = to;
+			w[m] = weight;
+			m++;
+		}
+	}
+}
@@ -0,0 +1,323 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Simulates a schedule whose durations are uncertain. Each activity has an
+ * optimistic, most likely, and pessimistic duration, and each trial draws every
+ * duration from the PERT beta distribution over them, then sweeps EC and LC
+ * values the same way discoverECVals() and discoverLCVals() do. The result is
+ * the distribution of the project's completion time and how often each
+ * activity was critical.
+ * <p>
+ * The topological sequence is found once and shared by every trial. Trials are
+ * split into a fixed number of blocks run on the common fork-join pool, each
+ * with its own SplittableRandom split from the seed and its own primitive
+ * arrays, so a seed gives the same result on any number of cores.
+ *
+ * @author Aaron Goin
+ */
+public class MonteCarlo {
+	private static final int BLOCKS = 64;// trial blocks, independent of the number of cores
+
+	private final Schedule schedule;
+	private final double[] low;
+	private final double[] alpha;
+	private final double[] beta;
+	private final double[] range;// 0 for a fixed duration
+
+	/**
+	 * @param schedule the schedule being simulated
+	 * @param est      the optimistic, most likely, and pessimistic duration of
+	 *                 each node, by id, as est[node] = {a, m, b}
+	 */
+	public MonteCarlo(Schedule schedule, double[][] est) {
+		int n = schedule.graph().size();
+		this.schedule = schedule;
+		low = new double[n];
+		alpha = new double[n];
+		beta = new double[n];
+		range = new double[n];
+		for (int v = 0; v < n; v++) {
+			double a = est[v][0];
+			double m = est[v][1];
+			double b = est[v][2];
+			low[v] = a;
+			range[v] = b - a;
+			if (b > a) {
+				alpha[v] = 1 + 4 * (m - a) / (b - a);
+				beta[v] = 1 + 4 * (b - m) / (b - a);
+			}
+		}
+	}
+
+	/**
+	 * Reads three-point estimates from a text file with one "name optimistic
+	 * likely pessimistic" line per activity. Activities that aren't listed keep
+	 * their duration from the schedule in every trial.
+	 *
+	 * @param schedule the schedule whose activities are estimated
+	 * @param filename the name of the estimates file
+	 * @return the estimates of every node, by id, as {a, m, b}
+	 * @throws IOException       if the file can't be read
+	 * @throws ScheduleException if a line is formatted incorrectly, names an
+	 *                           unknown node or one already estimated, or
+	 *                           doesn't have a &lt;= m &lt;= b
+	 */
+	public static double[][] readEstimates(Schedule schedule, String filename) throws IOException, ScheduleException {
+		CsrGraph graph = schedule.graph();
+		SymbolTable symbols = schedule.symbols();
+		double[][] est = new double[graph.size()][];
+		for (int v = 0; v < est.length; v++) {
+			double d = graph.inDegree(v) == 0 ? 0 : graph.inWeight(graph.inStart(v));
+			est[v] = new double[] { d, d, d };
+		}
+		boolean[] read = new boolean[est.length];
+
+		try (BufferedReader r = new BufferedReader(new FileReader(filename))) {
+			String line;
+			int lineNum = 0;
+			while ((line = r.readLine()) != null) {
+				lineNum++;
+				line = line.trim();
+				if (line.equals("")) {
+					continue;
+				}
+				String[] parts = line.split("\\s+");
+				if (parts.length != 4) {
+					throw new ScheduleException("line " + lineNum + ": expected \"name optimistic likely pessimistic\"");
+				}
+				int v = symbols.id(parts[0]);
+				if (v < 0) {
+					throw new ScheduleException("line " + lineNum + ": no node named " + parts[0]);
+				}
+				if (graph.inDegree(v) == 0 || v == schedule.order()[schedule.order().length - 1]) {
+					throw new ScheduleException("line " + lineNum + ": S and F have no duration");
+				}
+				if (read[v]) {
+					throw new ScheduleException("line " + lineNum + ": a second estimate for " + parts[0]);
+				}
+				read[v] = true;
+				double[] e = new double[3];
+				for (int i = 0; i < 3; i++) {
+					try {
+						e[i] = Double.parseDouble(parts[i + 1]);
+					} catch (NumberFormatException ex) {
+						throw new ScheduleException("line " + lineNum + ": " + parts[i + 1] + " is not a number");
+					}
+				}
+				if (!(0 <= e[0] && e[0] <= e[1] && e[1] <= e[2]) || Double.isInfinite(e[2])) {
+					throw new ScheduleException("line " + lineNum + ": durations must be 0 <= optimistic <= "
+							+ "likely <= pessimistic");
+				}
+				est[v] = e;
+			}
+		}
+		return est;
+	}
+
+	/**
+	 * Runs the trials.
+	 *
+	 * @param trials the number of trials
+	 * @param seed   the seed every trial's durations are drawn from
+	 * @return the completion times and criticality of the trials
+	 */
+	public Result run(int trials, long seed) {
+		int n = schedule.graph().size();
+		double[] finish = new double[trials];
+		long[] critical = new long[n];
+
+		/* Split the generators up front, so each block gets the same one on any pool */
+		SplittableRandom root = new SplittableRandom(seed);
+		ArrayList<Callable<long[]>> blocks = new ArrayList<Callable<long[]>>();
+		for (int b = 0; b < BLOCKS; b++) {
+			int lo = (int) ((long) trials * b / BLOCKS);
+			int hi = (int) ((long) trials * (b + 1) / BLOCKS);
+			SplittableRandom rand = root.split();
+			blocks.add(() -> runBlock(rand, finish, lo, hi));
+		}
+		try {
+			for (Future<long[]> f : ForkJoinPool.commonPool().invokeAll(blocks)) {
+				long[] c = f.get();
+				for (int v = 0; v < n; v++) {
+					critical[v] += c[v];
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+		Arrays.sort(finish);
+		return new Result(schedule, finish, critical);
+	}
+
+	/**
+	 * Runs a block of trials with its own generator and arrays.
+	 *
+	 * @param rand   the block's generator
+	 * @param finish the completion time of every trial, filled from lo to hi
+	 * @return the number of trials in which each node was critical
+	 */
+	private long[] runBlock(SplittableRandom rand, double[] finish, int lo, int hi) {
+		CsrGraph graph = schedule.graph();
+		int[] order = schedule.order();
+		int n = graph.size();
+		int f = order[n - 1];
+		double[] dur = new double[n];
+		double[] eC = new double[n];
+		double[] lC = new double[n];
+		long[] critical = new long[n];
+
+		for (int t = lo; t < hi; t++) {
+			for (int v = 0; v < n; v++) {
+				dur[v] = range[v] == 0 ? low[v] : low[v] + range[v] * sampleBeta(rand, alpha[v], beta[v]);
+			}
+
+			/* Every edge into a node is the node's duration, so EC is the latest predecessor plus it */
+			for (int i = 1; i < n; i++) {
+				int v = order[i];
+				double max = 0;
+				for (int e = graph.inStart(v); e < graph.inEnd(v); e++) {
+					max = Math.max(max, eC[graph.inSource(e)]);
+				}
+				eC[v] = max + dur[v];
+			}
+			lC[f] = eC[f];
+			for (int i = n - 2; i > -1; i--) {
+				int v = order[i];
+				double min = Double.MAX_VALUE;
+				for (int e = graph.outStart(v); e < graph.outEnd(v); e++) {
+					int s = graph.outTarget(e);
+					min = Math.min(min, lC[s] - dur[s]);
+				}
+				lC[v] = min;
+			}
+
+			finish[t] = eC[f];
+			double eps = 1e-9 * Math.max(1, eC[f]);
+			for (int v = 0; v < n; v++) {
+				if (lC[v] - eC[v] <= eps) {
+					critical[v]++;
+				}
+			}
+		}
+		return critical;
+	}
+
+	/**
+	 * Draws from Beta(a, b) as X / (X + Y), with X and Y drawn from Gamma(a, 1)
+	 * and Gamma(b, 1). PERT shapes are never below 1.
+	 */
+	private static double sampleBeta(SplittableRandom rand, double a, double b) {
+		double x = sampleGamma(rand, a);
+		double y = sampleGamma(rand, b);
+		return x / (x + y);
+	}
+
+	/**
+	 * Draws from Gamma(k, 1) for k &gt;= 1 with the method of Marsaglia and Tsang.
+	 */
+	private static double sampleGamma(SplittableRandom rand, double k) {
+		double d = k - 1.0 / 3;
+		double c = 1 / Math.sqrt(9 * d);
+		while (true) {
+			double z = rand.nextGaussian();
+			double v = 1 + c * z;
+			if (v <= 0) {
+				continue;
+			}
+			v = v * v * v;
+			double u = rand.nextDouble();
+			if (Math.log(u) < 0.5 * z * z + d - d * v + d * Math.log(v)) {
+				return d * v;
+			}
+		}
+	}
+
+	/**
+	 * The completion times of every trial, and how often each node was critical.
+	 */
+	public static class Result {
+		private final Schedule schedule;
+		private final double[] finish;// sorted
+		private final long[] critical;
+
+		Result(Schedule schedule, double[] finish, long[] critical) {
+			this.schedule = schedule;
+			this.finish = finish;
+			this.critical = critical;
+		}
+
+		/**
+		 * @return the number of trials
+		 */
+		public int trials() {
+			return finish.length;
+		}
+
+		/**
+		 * @param p a percentile, from 0 to 100
+		 * @return the completion time that p percent of the trials finished by, by
+		 *         the nearest-rank method
+		 */
+		public double percentile(double p) {
+			int rank = (int) Math.ceil(p / 100 * finish.length);
+			return finish[Math.min(finish.length - 1, Math.max(0, rank - 1))];
+		}
+
+		/**
+		 * @return the mean completion time
+		 */
+		public double mean() {
+			double sum = 0;
+			for (double x : finish) {
+				sum += x;
+			}
+			return sum / finish.length;
+		}
+
+		/**
+		 * @return the standard deviation of the completion time
+		 */
+		public double stdDev() {
+			double mean = mean();
+			double sum = 0;
+			for (double x : finish) {
+				sum += (x - mean) * (x - mean);
+			}
+			return Math.sqrt(sum / finish.length);
+		}
+
+		/**
+		 * @param name the name of a node
+		 * @return the fraction of trials in which the node had no slack time, or -1
+		 *         if there is no such node
+		 */
+		public double criticality(String name) {
+			int v = schedule.symbols().id(name);
+			return v < 0 ? -1 : (double) critical[v] / finish.length;
+		}
+
+		/**
+		 * @return the node names in topological order
+		 */
+		public List<String> names() {
+			ArrayList<String> names = new ArrayList<String>();
+			for (int v : schedule.order()) {
+				names.add(schedule.symbols().name(v));
+			}
+			return names;
+		}
+	}
+}
@@ -0,0 +1,506 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A schedule whose graph, durations, topological sequence, and EC and LC
+ * values are stored outside the Java heap, for graphs with more edges than the
+ * heap can hold. Each array is a run of buffers mapped from temporary files in
+ * a directory, or of direct buffers, so memory use is fixed once the graph is
+ * loaded and the garbage collector never scans it. A file-backed graph is only
+ * limited by disk space and can be larger than physical memory. Direct buffers
+ * are limited by -XX:MaxDirectMemorySize, which defaults to -Xmx, so they only
+ * move a graph off the heap rather than past its size.
+ * <p>
+ * Every edge into a node has the node's duration, so durations are stored once
+ * per node rather than once per edge, and the graph takes about 8 bytes per edge
+ * and 24 bytes per node off the heap. The heap keeps the node names and, while
+ * the edge list is read, three ints per node, so it has to hold the nodes but
+ * none of the edges.
+ * <p>
+ * An edge list is read twice: once to name the nodes, count their edges, and
+ * check the S and F rules, and once to fill the rows in place. Each file is
+ * deleted as soon as it is mapped, which leaves the mapping in place, so a
+ * long-running server or batch doesn't collect them. Where a mapped file can't
+ * be deleted, close() removes it. A schedule must only be used by one thread at
+ * a time.
+ *
+ * @author Aaron Goin
+ */
+public class OffHeapSchedule implements ComputedSchedule, Closeable {
+	private static final int BLOCK_SHIFT = 26;// 2^26 ints, 256 MB, per buffer
+
+	private final SymbolTable symbols;
+	private final ArrayList<File> files = new ArrayList<File>();
+	private final File dir;
+	private final int n;
+	private final int m;
+	private final IntArray outOff;
+	private final IntArray outTgt;
+	private final IntArray inOff;
+	private final IntArray inSrc;
+	private final IntArray dur;
+	private final IntArray order;
+	private final IntArray eC;
+	private final IntArray lC;
+
+	/**
+	 * Reads an edge list straight into off-heap rows, checking it against the
+	 * same rules as CriticalPathEngine.loadEdgeList(), and finds a topological
+	 * sequence.
+	 *
+	 * @param filename the name of the text file that contains an edge list
+	 * @param dir      the directory the arrays are mapped from, or null to keep
+	 *                 them in direct memory, up to -XX:MaxDirectMemorySize
+	 * @return the checked schedule, which still has to be computed
+	 * @throws IOException       if the file can't be read or the arrays can't be
+	 *                           made
+	 * @throws ScheduleException if a line is formatted incorrectly, an edge
+	 *                           breaks the S and F rules or repeats an earlier
+	 *                           one, or the graph has a cycle
+	 */
+	public static OffHeapSchedule loadEdgeList(String filename, File dir) throws IOException, ScheduleException {
+		SymbolTable symbols = new SymbolTable();
+		int[] outDeg = new int[16];
+		int[] inDeg = new int[16];
+		int[] dur = new int[16];// -1 until an edge into the node is read
+		Arrays.fill(dur, -1);
+		long m = 0;
+
+		/* First pass: name the nodes, count their edges, and check each edge */
+		try (BufferedReader r = new BufferedReader(new FileReader(filename), 1 << 16)) {
+			String line;
+			int lineNum = 0;
+			while ((line = r.readLine()) != null) {
+				lineNum++;
+				String[] parts = split(line, lineNum);
+				if (parts == null) {
+					continue;
+				}
+				int weight = weight(parts, lineNum);
+				int from = symbols.intern(parts[0]);
+				int to = symbols.intern(parts[1]);
+				if (symbols.size() > dur.length) {
+					int old = dur.length;
+					outDeg = Arrays.copyOf(outDeg, old * 2);
+					inDeg = Arrays.copyOf(inDeg, old * 2);
+					dur = Arrays.copyOf(dur, old * 2);
+					Arrays.fill(dur, old, dur.length, -1);
+				}
+
+				if (weight < 0) {
+					throw new ScheduleException("line " + lineNum + ": durations must not be negative");
+				}
+				if (parts[1].equals("S") || parts[0].equals("F")) {
+					throw new ScheduleException("line " + lineNum + ": no edge may point into S or leave F");
+				}
+				if (parts[1].equals("F") && weight != 0) {
+					throw new ScheduleException("line " + lineNum + ": every edge into F must be 0");
+				}
+				if (dur[to] != -1 && dur[to] != weight) {
+					throw new ScheduleException("line " + lineNum + ": every edge into " + parts[1]
+							+ " must be " + dur[to]);
+				}
+				dur[to] = weight;
+				outDeg[from]++;
+				inDeg[to]++;
+				if (++m > Integer.MAX_VALUE) {
+					throw new ScheduleException("more than " + Integer.MAX_VALUE + " edges");
+				}
+			}
+		}
+		int sIdx = symbols.id("S");
+		int fIdx = symbols.id("F");
+		if (sIdx < 0 || fIdx < 0 || dur[fIdx] != 0 || outDeg[sIdx] == 0) {
+			throw new ScheduleException("S needs an adjacent node, and F a predecessor");
+		}
+
+		OffHeapSchedule schedule = new OffHeapSchedule(symbols, (int) m, dir);
+		try {
+			schedule.fill(filename, outDeg, inDeg, dur);
+			schedule.checkRepeats(filename, outDeg);
+			schedule.sortTopo();
+		} catch (IOException | ScheduleException | RuntimeException e) {
+			schedule.close();
+			throw e;
+		}
+		return schedule;
+	}
+
+	/**
+	 * Makes the arrays of a graph with the nodes named so far and m edges.
+	 */
+	private OffHeapSchedule(SymbolTable symbols, int m, File dir) throws IOException {
+		this.symbols = symbols;
+		this.dir = dir;
+		this.n = symbols.size();
+		this.m = m;
+		outOff = array(n + 1);
+		outTgt = array(m);
+		inOff = array(n + 1);
+		inSrc = array(m);
+		dur = array(n);
+		order = array(n);
+		eC = array(n);
+		lC = array(n);
+	}
+
+	/**
+	 * Second pass: sets the row offsets from the counts of the first pass, then
+	 * reads the edge list again and puts each edge at the next free place in its
+	 * rows, so edges keep the order they were read in, as they do in a CsrGraph.
+	 * The EC and LC arrays hold the next free place of each row until they're
+	 * used.
+	 */
+	private void fill(String filename, int[] outDeg, int[] inDeg, int[] d) throws IOException, ScheduleException {
+		int out = 0;
+		int in = 0;
+		for (int v = 0; v < n; v++) {
+			outOff.set(v, out);
+			inOff.set(v, in);
+			eC.set(v, out);
+			lC.set(v, in);
+			dur.set(v, Math.max(d[v], 0));
+			out += outDeg[v];
+			in += inDeg[v];
+		}
+		outOff.set(n, out);
+		inOff.set(n, in);
+
+		try (BufferedReader r = new BufferedReader(new FileReader(filename), 1 << 16)) {
+			String line;
+			int lineNum = 0;
+			int edges = 0;
+			while ((line = r.readLine()) != null) {
+				lineNum++;
+				String[] parts = split(line, lineNum);
+				if (parts == null) {
+					continue;
+				}
+				int from = symbols.id(parts[0]);
+				int to = symbols.id(parts[1]);
+				if (from < 0 || to < 0 || ++edges > m || weight(parts, lineNum) != d[to]) {
+					throw new ScheduleException(filename + " changed while it was read");
+				}
+				int o = eC.get(from);
+				eC.set(from, o + 1);
+				outTgt.set(o, to);
+				int i = lC.get(to);
+				lC.set(to, i + 1);
+				inSrc.set(i, from);
+			}
+			if (edges != m) {
+				throw new ScheduleException(filename + " changed while it was read");
+			}
+		}
+	}
+
+	/**
+	 * Rejects an edge that repeats an earlier edge between the same two nodes,
+	 * as CriticalPathEngine.loadEdgeList() does. Each row marks the nodes it
+	 * points to, and only when an edge is repeated is the edge list read a third
+	 * time, to find the line of the first repeat. Rows keep the order edges were
+	 * read in, so the k-th edge read from a node is the k-th edge of its row.
+	 *
+	 * @param seen an array of at least n ints that is no longer used
+	 */
+	private void checkRepeats(String filename, int[] seen) throws IOException, ScheduleException {
+		Arrays.fill(seen, 0, n, 0);
+		BitSet repeats = null;
+		for (int v = 0; v < n; v++) {
+			for (int e = outOff.get(v); e < outOff.get(v + 1); e++) {
+				int t = outTgt.get(e);
+				if (seen[t] == v + 1) {
+					if (repeats == null) {
+						repeats = new BitSet(m);
+					}
+					repeats.set(e);
+				}
+				seen[t] = v + 1;
+			}
+		}
+		if (repeats == null) {
+			return;
+		}
+
+		Arrays.fill(seen, 0, n, 0);// the number of edges read from each node
+		try (BufferedReader r = new BufferedReader(new FileReader(filename), 1 << 16)) {
+			String line;
+			int lineNum = 0;
+			while ((line = r.readLine()) != null) {
+				lineNum++;
+				String[] parts = split(line, lineNum);
+				if (parts == null) {
+					continue;
+				}
+				int from = symbols.id(parts[0]);
+				if (from < 0 || seen[from] == outOff.get(from + 1) - outOff.get(from)) {
+					break;
+				}
+				if (repeats.get(outOff.get(from) + seen[from]++)) {
+					throw new ScheduleException("line " + lineNum + ": the edge " + parts[0] + " -> " + parts[1]
+							+ " was already read");
+				}
+			}
+		}
+		throw new ScheduleException(filename + " changed while it was read");
+	}
+
+	/**
+	 * Finds a topological sequence the same way CsrGraph.topoOrder() does, so it
+	 * matches the sequence of a schedule loaded on the heap. The EC array holds
+	 * the in-degrees and the LC array the stack until they're used.
+	 */
+	private void sortTopo() throws ScheduleException {
+		int top = 0;
+		for (int v = n - 1; v > -1; v--) {
+			int deg = inOff.get(v + 1) - inOff.get(v);
+			eC.set(v, deg);
+			if (deg == 0) {
+				lC.set(top++, v);
+			}
+		}
+		int count = 0;
+		while (top > 0) {
+			int v = lC.get(--top);
+			order.set(count++, v);
+			for (int e = outOff.get(v); e < outOff.get(v + 1); e++) {
+				int t = outTgt.get(e);
+				int deg = eC.get(t) - 1;
+				eC.set(t, deg);
+				if (deg == 0) {
+					lC.set(top++, t);
+				}
+			}
+		}
+		if (count != n) {
+			throw new ScheduleException("the nodes have a cycle: " + cycle());
+		}
+
+		if (order.get(0) != symbols.id("S") || order.get(n - 1) != symbols.id("F")) {
+			throw new ScheduleException("the sequence must start at S and end at F");
+		}
+		for (int i = 1; i < n - 1; i++) {
+			int v = order.get(i);
+			if (inOff.get(v) == inOff.get(v + 1) || outOff.get(v) == outOff.get(v + 1)) {
+				throw new ScheduleException("node " + symbols.name(v) + " needs a predecessor and an adjacent node");
+			}
+		}
+	}
+
+	/**
+	 * Names a cycle after sortTopo() stopped, by walking back through
+	 * predecessors that were never freed until a node repeats, as
+	 * CsrGraph.findCycle() does. The LC array marks the step each node was seen
+	 * at, and the walk is kept in the unused end of the order array.
+	 */
+	private String cycle() {
+		int count = 0;
+		int start = -1;
+		for (int v = 0; v < n; v++) {
+			lC.set(v, 0);
+			if (eC.get(v) > 0) {
+				count++;
+				if (start < 0) {
+					start = v;
+				}
+			}
+		}
+		int base = n - count;
+		int steps = 0;
+		int v = start;
+		while (lC.get(v) == 0) {
+			lC.set(v, steps + 1);
+			order.set(base + steps++, v);
+			int e = inOff.get(v);
+			while (eC.get(inSrc.get(e)) == 0) {
+				e++;
+			}
+			v = inSrc.get(e);
+		}
+
+		StringBuilder names = new StringBuilder();
+		for (int i = steps - 1; i >= lC.get(v) - 1; i--) {
+			names.append(symbols.name(order.get(base + i))).append(" -> ");
+		}
+		return names.append(symbols.name(order.get(base + steps - 1))).toString();
+	}
+
+	/**
+	 * Discovers the EC and LC values of every node. The EC of a node is the latest
+	 * EC of its predecessors plus its duration, and the LC of a node is the
+	 * earliest LC minus duration of its adjacent nodes.
+	 */
+	public void compute() {
+		eC.set(order.get(0), 0);
+		for (int i = 1; i < n; i++) {
+			int v = order.get(i);
+			int max = Integer.MIN_VALUE;
+			for (int e = inOff.get(v); e < inOff.get(v + 1); e++) {
+				max = Math.max(max, eC.get(inSrc.get(e)));
+			}
+			eC.set(v, max + dur.get(v));
+		}
+		int f = order.get(n - 1);
+		lC.set(f, eC.get(f));
+		for (int i = n - 2; i > -1; i--) {
+			int v = order.get(i);
+			int min = Integer.MAX_VALUE;
+			for (int e = outOff.get(v); e < outOff.get(v + 1); e++) {
+				int t = outTgt.get(e);
+				min = Math.min(min, lC.get(t) - dur.get(t));
+			}
+			lC.set(v, min);
+		}
+	}
+
+	/**
+	 * @return the number of edges
+	 */
+	public int edgeCount() {
+		return m;
+	}
+
+	@Override
+	public int size() {
+		return n;
+	}
+
+	@Override
+	public int nodeAt(int i) {
+		return order.get(i);
+	}
+
+	@Override
+	public String getName(int v) {
+		return symbols.name(v);
+	}
+
+	@Override
+	public int getEC(int v) {
+		return eC.get(v);
+	}
+
+	@Override
+	public int getLC(int v) {
+		return lC.get(v);
+	}
+
+	@Override
+	public int getSlack(int v) {
+		return lC.get(v) - eC.get(v);
+	}
+
+	@Override
+	public int getDuration() {
+		return eC.get(order.get(n - 1));
+	}
+
+	/**
+	 * Removes the files the arrays are mapped from that couldn't be deleted when
+	 * they were mapped. Their memory is returned once the schedule is no longer
+	 * reachable.
+	 */
+	@Override
+	public void close() throws IOException {
+		IOException failed = null;
+		for (File f : files) {
+			try {
+				Files.deleteIfExists(f.toPath());
+			} catch (IOException e) {
+				failed = e;
+			}
+		}
+		files.clear();
+		if (failed != null) {
+			throw failed;
+		}
+	}
+
+	/**
+	 * Makes an off-heap array, mapped from a new file in the directory if there
+	 * is one.
+	 */
+	private IntArray array(int length) throws IOException {
+		int blocks = Math.max(1, (int) (((long) length + (1 << BLOCK_SHIFT) - 1) >>> BLOCK_SHIFT));
+		IntBuffer[] bufs = new IntBuffer[blocks];
+		File f = null;
+		FileChannel ch = null;
+		try {
+			if (dir != null) {
+				f = File.createTempFile("offheap", ".ints", dir);
+				ch = FileChannel.open(f.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+			}
+			for (int b = 0; b < blocks; b++) {
+				long from = (long) b << BLOCK_SHIFT;
+				int ints = (int) Math.min(1 << BLOCK_SHIFT, length - from);
+				ByteBuffer buf = ch == null ? ByteBuffer.allocateDirect(4 * ints)
+						: ch.map(FileChannel.MapMode.READ_WRITE, 4 * from, 4L * ints);
+				bufs[b] = buf.order(ByteOrder.nativeOrder()).asIntBuffer();
+			}
+		} finally {
+			if (ch != null) {
+				ch.close();// the mappings outlive the channel
+			}
+			if (f != null && !f.delete()) {
+				f.deleteOnExit();// the file is still mapped where the mappings keep it open
+				files.add(f);
+			}
+		}
+		return new IntArray(bufs);
+	}
+
+	/**
+	 * @return the three parts of a line, or null if the line is blank
+	 */
+	private static String[] split(String line, int lineNum) throws ScheduleException {
+		line = line.trim();
+		if (line.equals("")) {
+			return null;
+		}
+		String[] parts = line.split("\\s+");
+		if (parts.length != 3) {
+			throw new ScheduleException("line " + lineNum + ": expected \"from to duration\"");
+		}
+		return parts;
+	}
+
+	private static int weight(String[] parts, int lineNum) throws ScheduleException {
+		try {
+			return Integer.parseInt(parts[2]);
+		} catch (NumberFormatException e) {
+			throw new ScheduleException("line " + lineNum + ": " + parts[2] + " is not an integer");
+		}
+	}
+
+	/**
+	 * An int array split across buffers of 2^26 ints, so it can be longer than a
+	 * single buffer allows.
+	 */
+	private static class IntArray {
+		private final IntBuffer[] blocks;
+
+		IntArray(IntBuffer[] blocks) {
+			this.blocks = blocks;
+		}
+
+		int get(int i) {
+			return blocks[i >>> BLOCK_SHIFT].get(i & ((1 << BLOCK_SHIFT) - 1));
+		}
+
+		void set(int i, int v) {
+			blocks[i >>> BLOCK_SHIFT].put(i & ((1 << BLOCK_SHIFT) - 1), v);
+		}
+	}
+}
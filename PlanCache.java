@@ -0,0 +1,123 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the most recently used schedule plans, keyed by the structural hash of
+ * their node names and edges. A graph whose structure is already cached reuses
+ * the plan's topological sequence instead of being sorted and checked again. A
+ * hit is confirmed against the plan's names and edges, so two structures that
+ * hash the same are never mixed up.
+ * <p>
+ * Plans are found and built outside the cache's lock, so one cache can be
+ * shared by every thread of an engine.
+ *
+ * @author Aaron Goin
+ */
+public class PlanCache {
+	private final LinkedHashMap<Long, SchedulePlan> plans;
+	private long hits;
+	private long misses;
+
+	/**
+	 * @param capacity the most plans kept, dropping the least recently used
+	 */
+	public PlanCache(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		plans = new LinkedHashMap<Long, SchedulePlan>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, SchedulePlan> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Gets the plan of a graph, sorting and checking the graph into a new plan if
+	 * its structure isn't cached.
+	 *
+	 * @param symbols the node names, where ids are node numbers in the graph
+	 * @param graph   the graph
+	 * @return the plan of the graph
+	 * @throws ScheduleException if the graph isn't cached and has a cycle, or a
+	 *                           node is missing a predecessor or adjacent node
+	 */
+	public SchedulePlan get(SymbolTable symbols, CsrGraph graph) throws ScheduleException {
+		long hash = SchedulePlan.hash(symbols, graph);
+		SchedulePlan plan = lookup(hash, symbols, graph);
+		if (plan == null) {
+			plan = store(hash, symbols, graph, CriticalPathEngine.sortTopo(symbols, graph));
+		}
+		return plan;
+	}
+
+	/**
+	 * Gets the plan of a schedule that is already checked, keeping its
+	 * topological sequence if its structure isn't cached.
+	 *
+	 * @param schedule the schedule
+	 * @return the plan of the schedule
+	 */
+	public SchedulePlan get(Schedule schedule) {
+		long hash = SchedulePlan.hash(schedule.symbols(), schedule.graph());
+		SchedulePlan plan = lookup(hash, schedule.symbols(), schedule.graph());
+		if (plan == null) {
+			plan = store(hash, schedule.symbols(), schedule.graph(), schedule.order());
+		}
+		return plan;
+	}
+
+	/**
+	 * @return the cached plan with the graph's names and edges, or null if there
+	 *         is none
+	 */
+	private SchedulePlan lookup(long hash, SymbolTable symbols, CsrGraph graph) {
+		SchedulePlan plan;
+		synchronized (this) {
+			plan = plans.get(hash);
+		}
+		if (plan != null && plan.matches(symbols, graph)) {
+			synchronized (this) {
+				hits++;
+			}
+			return plan;
+		}
+		return null;
+	}
+
+	/**
+	 * Caches a new plan, replacing any plan whose structure hashes the same.
+	 */
+	private SchedulePlan store(long hash, SymbolTable symbols, CsrGraph graph, int[] order) {
+		SchedulePlan plan = new SchedulePlan(symbols, graph, order);
+		synchronized (this) {
+			misses++;
+			plans.put(hash, plan);
+		}
+		return plan;
+	}
+
+	/**
+	 * @return the number of lookups that reused a cached plan
+	 */
+	public synchronized long hits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of lookups that built a new plan
+	 */
+	public synchronized long misses() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of plans cached
+	 */
+	public synchronized int size() {
+		return plans.size();
+	}
+}
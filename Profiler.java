@@ -0,0 +1,277 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Records the wall time, allocated bytes, and node and edge counts of each
+ * phase of loading, computing, and displaying a schedule. Every phase is also
+ * emitted as a CriticalPath.Phase JFR event, so it shows up in a flight
+ * recording whether or not the profiler keeps it.
+ * <p>
+ * Allocated bytes are counted on the thread that runs a phase, so work a phase
+ * hands to the fork-join pool isn't included. A span is closed in a finally
+ * block or try-with-resources, so a phase that throws is still kept, as failed.
+ * A profiler can be shared by any number of threads.
+ *
+ * @author Aaron Goin
+ */
+public class Profiler {
+	private static final com.sun.management.ThreadMXBean THREADS = threads();
+	private static final Profiler EVENTS = new Profiler(false);
+
+	private final boolean record;
+	private final ArrayList<Entry> entries = new ArrayList<Entry>();
+
+	/**
+	 * A profiler that keeps every phase.
+	 */
+	public Profiler() {
+		this(true);
+	}
+
+	private Profiler(boolean record) {
+		this.record = record;
+	}
+
+	/**
+	 * @return the shared profiler that only emits JFR events
+	 */
+	public static Profiler events() {
+		return EVENTS;
+	}
+
+	/**
+	 * Starts timing a phase on the calling thread.
+	 *
+	 * @param phase the name of the phase
+	 * @return the running phase, which is ended by the same thread
+	 */
+	public Span start(String phase) {
+		return new Span(phase);
+	}
+
+	/**
+	 * @return every phase kept so far, in the order they ended
+	 */
+	public synchronized List<Entry> entries() {
+		return new ArrayList<Entry>(entries);
+	}
+
+	/**
+	 * Displays a table of the phases kept so far, with the phases of the same name
+	 * added together, in the order each name first ended, and failed phases on
+	 * lines of their own. A profiler that only emits JFR events keeps nothing, so
+	 * it displays nothing.
+	 *
+	 * @param out the stream the table is displayed on
+	 */
+	public void print(PrintStream out) {
+		if (!record) {
+			return;
+		}
+		LinkedHashMap<String, long[]> totals = new LinkedHashMap<String, long[]>();
+		for (Entry e : entries()) {
+			String name = e.isFailed() ? e.getPhase() + " (failed)" : e.getPhase();
+			long[] t = totals.computeIfAbsent(name, k -> new long[5]);
+			t[0]++;
+			t[1] += e.getNanos();
+			t[2] += e.getAllocated();
+			t[3] += e.getNodes();
+			t[4] += e.getEdges();
+		}
+		long nanos = 0;
+		long bytes = 0;
+		out.printf("%-28s%6s%12s%12s%10s%10s%n", "Phase", "Runs", "Time ms", "Alloc MB", "Nodes", "Edges");
+		out.println("------------------------------------------------------------------------------");
+		for (Map.Entry<String, long[]> e : totals.entrySet()) {
+			long[] t = e.getValue();
+			out.printf("%-28s%6d%12.3f%12.2f%10d%10d%n", e.getKey(), t[0], t[1] / 1e6, t[2] / 1048576.0, t[3], t[4]);
+			nanos += t[1];
+			bytes += t[2];
+		}
+		out.printf("%-28s%6s%12.3f%12.2f%n%n", "total", "", nanos / 1e6, bytes / 1048576.0);
+	}
+
+	private synchronized void add(Entry e) {
+		entries.add(e);
+	}
+
+	/**
+	 * @return the allocated bytes of the calling thread, or 0 if the JVM doesn't
+	 *         count them
+	 */
+	private static long allocated() {
+		return THREADS == null ? 0 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static com.sun.management.ThreadMXBean threads() {
+		Object bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+			return (com.sun.management.ThreadMXBean) bean;
+		}
+		return null;
+	}
+
+	/**
+	 * A phase that has started and not yet ended. Closing a span that wasn't
+	 * ended keeps the phase as failed, with no nodes or edges.
+	 */
+	public class Span implements AutoCloseable {
+		private final String phase;
+		private final PhaseEvent event;
+		private final boolean measure;
+		private final long start;
+		private final long alloc;
+		private boolean ended;
+
+		private Span(String phase) {
+			this.phase = phase;
+			this.event = new PhaseEvent();
+			this.measure = record || event.isEnabled();
+			event.begin();
+			this.alloc = measure ? allocated() : 0;
+			this.start = measure ? System.nanoTime() : 0;
+		}
+
+		/**
+		 * Ends the phase, unless it has already ended.
+		 *
+		 * @param nodes the number of nodes the phase worked on
+		 * @param edges the number of edges the phase worked on
+		 */
+		public void end(int nodes, int edges) {
+			end(nodes, edges, false);
+		}
+
+		/**
+		 * Ends the phase as failed, unless it has already ended.
+		 */
+		@Override
+		public void close() {
+			end(0, 0, true);
+		}
+
+		private void end(int nodes, int edges, boolean failed) {
+			if (ended) {
+				return;
+			}
+			ended = true;
+			if (!measure) {
+				return;
+			}
+			long nanos = System.nanoTime() - start;
+			long bytes = allocated() - alloc;
+			event.end();
+			if (event.shouldCommit()) {
+				event.phase = phase;
+				event.allocated = bytes;
+				event.nodes = nodes;
+				event.edges = edges;
+				event.failed = failed;
+				event.commit();
+			}
+			if (record) {
+				add(new Entry(phase, nanos, bytes, nodes, edges, failed));
+			}
+		}
+	}
+
+	/**
+	 * The measurements of a phase that has ended.
+	 */
+	public static class Entry {
+		private final String phase;
+		private final long nanos;
+		private final long allocated;
+		private final int nodes;
+		private final int edges;
+		private final boolean failed;
+
+		Entry(String phase, long nanos, long allocated, int nodes, int edges, boolean failed) {
+			this.phase = phase;
+			this.nanos = nanos;
+			this.allocated = allocated;
+			this.nodes = nodes;
+			this.edges = edges;
+			this.failed = failed;
+		}
+
+		/**
+		 * @return the name of the phase
+		 */
+		public String getPhase() {
+			return phase;
+		}
+
+		/**
+		 * @return the wall time of the phase, in nanoseconds
+		 */
+		public long getNanos() {
+			return nanos;
+		}
+
+		/**
+		 * @return the bytes allocated by the phase on its thread
+		 */
+		public long getAllocated() {
+			return allocated;
+		}
+
+		/**
+		 * @return the number of nodes the phase worked on
+		 */
+		public int getNodes() {
+			return nodes;
+		}
+
+		/**
+		 * @return the number of edges the phase worked on
+		 */
+		public int getEdges() {
+			return edges;
+		}
+
+		/**
+		 * @return true if the phase threw before it ended
+		 */
+		public boolean isFailed() {
+			return failed;
+		}
+	}
+
+	/**
+	 * The JFR event of a phase, whose duration is the phase's wall time.
+	 */
+	@Name("CriticalPath.Phase")
+	@Label("Critical Path Phase")
+	@Category("Critical Path")
+	@Description("A phase of loading, computing, or displaying a schedule")
+	static class PhaseEvent extends Event {
+		@Label("Phase")
+		String phase;
+
+		@Label("Allocated")
+		@DataAmount
+		long allocated;
+
+		@Label("Nodes")
+		int nodes;
+
+		@Label("Edges")
+		int edges;
+
+		@Label("Failed")
+		boolean failed;
+	}
+}
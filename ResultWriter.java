@@ -0,0 +1,489 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes the EC, LC, and slack time of every node in a result as the console
+ * table, CSV, or JSON Lines. Rows are formatted straight into a byte buffer,
+ * which is written to a channel whenever it fills, so no strings are built per
+ * row. Rows can be limited to the critical nodes, which have no slack time, to
+ * the nodes with less slack time than a threshold, or to the k nodes with the
+ * least slack time. A ScheduleResult's rows are picked from its slack index.
+ * <p>
+ * A writer only holds its settings, so one writer can be shared by any number
+ * of threads.
+ *
+ * @author Aaron Goin
+ */
+public class ResultWriter {
+	private static final int BUFFER = 1 << 16;
+	private static final byte[] HEADER = ("Activity Node   EC     LC   SlackTime\n"
+			+ "-----------------------------------------------------\n").getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] CSV_HEADER = "node,ec,lc,slack\n".getBytes(StandardCharsets.US_ASCII);
+
+	private final char format;
+	private final boolean criticalOnly;
+	private final int topK;
+	private final int under;
+
+	/**
+	 * A writer of every row as the console table.
+	 */
+	public ResultWriter() {
+		this('t', false, 0, 0);
+	}
+
+	/**
+	 * @param format       't' for the console table, 'c' for CSV, or 'j' for JSON
+	 *                     Lines
+	 * @param criticalOnly true to only write nodes with no slack time
+	 * @param topK         the most rows written, keeping the ones with the least
+	 *                     slack time, or 0 to write every row
+	 */
+	public ResultWriter(char format, boolean criticalOnly, int topK) {
+		this(format, criticalOnly, topK, 0);
+	}
+
+	/**
+	 * @param format       't' for the console table, 'c' for CSV, or 'j' for JSON
+	 *                     Lines
+	 * @param criticalOnly true to only write nodes with no slack time
+	 * @param topK         the most rows written, keeping the ones with the least
+	 *                     slack time, or 0 to write every row
+	 * @param under        only write nodes with less slack time than this, least
+	 *                     first, or 0 to write nodes with any slack time
+	 */
+	public ResultWriter(char format, boolean criticalOnly, int topK, int under) {
+		if (format != 't' && format != 'c' && format != 'j') {
+			throw new IllegalArgumentException("unknown format " + format);
+		}
+		if (topK < 0) {
+			throw new IllegalArgumentException("topK must not be negative");
+		}
+		if (under < 0) {
+			throw new IllegalArgumentException("under must not be negative");
+		}
+		this.format = format;
+		this.criticalOnly = criticalOnly;
+		this.topK = topK;
+		this.under = under;
+	}
+
+	/**
+	 * Writes a result to a file, replacing it if it exists.
+	 *
+	 * @param result   the computed schedule
+	 * @param filename the name of the file to write
+	 * @throws IOException if the file can't be written
+	 */
+	public void write(ComputedSchedule result, String filename) throws IOException {
+		try (FileChannel ch = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			write(result, ch);
+		}
+	}
+
+	/**
+	 * Writes a result to a channel, which is left open.
+	 *
+	 * @param result the computed schedule
+	 * @param out    the channel the rows are written to
+	 * @throws IOException if the channel can't be written
+	 */
+	public void write(ComputedSchedule result, WritableByteChannel out) throws IOException {
+		Sink s = new Sink(out);
+		header(s);
+		putRows(s, result, rows(result));
+		footer(s);
+		s.flush();
+	}
+
+	/**
+	 * Starts writing the rows of a schedule that is computed a part at a time,
+	 * such as a rolling schedule. Rows can't be limited to the top k or a slack
+	 * threshold, which sort every row at once.
+	 *
+	 * @param out the channel the rows are written to, which is left open
+	 * @return the appender the parts are written with
+	 * @throws IOException if the header can't be written
+	 */
+	public Appender appender(WritableByteChannel out) throws IOException {
+		if (topK != 0 || under != 0) {
+			throw new IllegalStateException("rows sorted by slack time need every row at once");
+		}
+		return new Appender(new Sink(out));
+	}
+
+	private void header(Sink s) throws IOException {
+		if (format == 't') {
+			s.put(HEADER);
+		} else if (format == 'c') {
+			s.put(CSV_HEADER);
+		}
+	}
+
+	private void footer(Sink s) throws IOException {
+		if (format == 't') {
+			s.ensure(1);
+			s.put((byte) '\n');
+		}
+	}
+
+	private void putRows(Sink s, ComputedSchedule result, int[] rows) throws IOException {
+		for (int v : rows) {
+			String name = result.getName(v);
+			int eC = result.getEC(v);
+			int lC = result.getLC(v);
+			s.ensure(6 * name.length() + 80);// the longest a name can get once escaped
+			if (format == 't') {
+				tableRow(s, name, eC, lC);
+			} else if (format == 'c') {
+				csvRow(s, name, eC, lC);
+			} else {
+				jsonRow(s, name, eC, lC);
+			}
+		}
+	}
+
+	/**
+	 * Picks the nodes that are written, in topological order, or by least slack
+	 * time when only the top k or those under a threshold are written. A slack
+	 * index is only used if the result already has one, since sorting every node
+	 * costs more than the heap for a result that is written once.
+	 *
+	 * @param result the computed schedule
+	 * @return the nodes to write, in the order they are written
+	 */
+	private int[] rows(ComputedSchedule result) {
+		SlackIndex index = result instanceof ScheduleResult ? ((ScheduleResult) result).cachedSlackIndex() : null;
+		if (index != null && (topK != 0 || under != 0)) {
+			return indexed(index);
+		}
+		int n = result.size();
+		int[] rows = new int[n];
+		int count = 0;
+		for (int i = 0; i < n; i++) {
+			int v = result.nodeAt(i);
+			int slack = result.getSlack(v);
+			if ((!criticalOnly || slack == 0) && (under == 0 || slack < under)) {
+				rows[count++] = v;
+			}
+		}
+		if (topK == 0 && under == 0) {
+			return Arrays.copyOf(rows, count);
+		}
+		return leastSlack(result, rows, count);
+	}
+
+	/**
+	 * Picks the rows from the front of a slack index, which is already sorted by
+	 * least slack time with ties in topological order.
+	 */
+	private int[] indexed(SlackIndex index) {
+		int count = index.size();
+		if (criticalOnly) {
+			count = index.countBelow(1);
+		}
+		if (under != 0) {
+			count = Math.min(count, index.countBelow(under));
+		}
+		return index.top(topK == 0 ? count : Math.min(topK, count));
+	}
+
+	/**
+	 * Keeps the topK rows with the least slack time in a bounded max-heap, so
+	 * picking them takes O(n log k) time, then sorts them by slack time. Ties keep
+	 * topological order. Without a topK, every candidate is sorted.
+	 *
+	 * @param result the computed schedule
+	 * @param rows   the candidate nodes, in topological order
+	 * @param count  the number of candidates
+	 * @return the nodes with the least slack time, least first
+	 */
+	private int[] leastSlack(ComputedSchedule result, int[] rows, int count) {
+		int k = topK == 0 ? count : Math.min(topK, count);
+		int[] heap = new int[k];// indexes into rows, largest key on top
+		int size = 0;
+		for (int i = 0; i < count; i++) {
+			if (size < k) {
+				heap[size] = i;
+				siftUp(result, rows, heap, size++);
+			} else if (before(result, rows, i, heap[0])) {
+				heap[0] = i;
+				siftDown(result, rows, heap, size);
+			}
+		}
+
+		/* Pop the largest into the back until the heap is empty */
+		int[] out = new int[k];
+		for (int end = k - 1; end >= 0; end--) {
+			out[end] = rows[heap[0]];
+			heap[0] = heap[end];
+			siftDown(result, rows, heap, end);
+		}
+		return out;
+	}
+
+	/**
+	 * @return true if row a has less slack time than row b, or the same slack
+	 *         time and an earlier topological position
+	 */
+	private static boolean before(ComputedSchedule result, int[] rows, int a, int b) {
+		int sa = result.getSlack(rows[a]);
+		int sb = result.getSlack(rows[b]);
+		return sa < sb || sa == sb && a < b;
+	}
+
+	private static void siftUp(ComputedSchedule result, int[] rows, int[] heap, int i) {
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (!before(result, rows, heap[parent], heap[i])) {
+				break;
+			}
+			int t = heap[parent];
+			heap[parent] = heap[i];
+			heap[i] = t;
+			i = parent;
+		}
+	}
+
+	private static void siftDown(ComputedSchedule result, int[] rows, int[] heap, int size) {
+		int i = 0;
+		while (true) {
+			int big = i;
+			int l = 2 * i + 1;
+			if (l < size && before(result, rows, heap[big], heap[l])) {
+				big = l;
+			}
+			if (l + 1 < size && before(result, rows, heap[big], heap[l + 1])) {
+				big = l + 1;
+			}
+			if (big == i) {
+				return;
+			}
+			int t = heap[big];
+			heap[big] = heap[i];
+			heap[i] = t;
+			i = big;
+		}
+	}
+
+	/**
+	 * A row of the console table: the name, EC, LC, and slack time, each padded
+	 * to line up under the header.
+	 */
+	private static void tableRow(Sink s, String name, int eC, int lC) {
+		s.putChars(name);
+		s.pad(15 - Math.min(name.length() - 1, 14));
+		s.putInt(eC);
+		s.pad(6 - (digits(eC) - 1));
+		s.putInt(lC);
+		s.pad(7 - (digits(lC) - 1));
+		s.putInt(lC - eC);
+		s.pad(3);
+		s.put((byte) '\n');
+	}
+
+	/**
+	 * A CSV row, with the name quoted when it has a comma, quote, or line break.
+	 */
+	private static void csvRow(Sink s, String name, int eC, int lC) {
+		boolean quote = false;
+		for (int i = 0; i < name.length() && !quote; i++) {
+			char c = name.charAt(i);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if (quote) {
+			s.put((byte) '"');
+			for (int i = 0; i < name.length(); i++) {
+				if (name.charAt(i) == '"') {
+					s.put((byte) '"');
+				}
+				s.putChar(name, i);
+			}
+			s.put((byte) '"');
+		} else {
+			s.putChars(name);
+		}
+		s.put((byte) ',');
+		s.putInt(eC);
+		s.put((byte) ',');
+		s.putInt(lC);
+		s.put((byte) ',');
+		s.putInt(lC - eC);
+		s.put((byte) '\n');
+	}
+
+	/**
+	 * A JSON object on its own line, with the name escaped.
+	 */
+	private static void jsonRow(Sink s, String name, int eC, int lC) {
+		s.putAscii("{\"node\":\"");
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c == '"' || c == '\\') {
+				s.put((byte) '\\');
+				s.put((byte) c);
+			} else if (c < 0x20) {
+				s.putAscii("\\u00");
+				s.put((byte) Character.forDigit(c >> 4, 16));
+				s.put((byte) Character.forDigit(c & 15, 16));
+			} else {
+				s.putChar(name, i);
+			}
+		}
+		s.putAscii("\",\"ec\":");
+		s.putInt(eC);
+		s.putAscii(",\"lc\":");
+		s.putInt(lC);
+		s.putAscii(",\"slack\":");
+		s.putInt(lC - eC);
+		s.putAscii("}\n");
+	}
+
+	/**
+	 * @return the number of characters in the decimal form of v
+	 */
+	static int digits(int v) {
+		long x = Math.abs((long) v);
+		int d = v < 0 ? 2 : 1;
+		while (x >= 10) {
+			x /= 10;
+			d++;
+		}
+		return d;
+	}
+
+	/**
+	 * Writes the parts of a schedule under one header, each as soon as it's
+	 * appended.
+	 */
+	public class Appender implements Closeable {
+		private final Sink s;
+
+		private Appender(Sink s) throws IOException {
+			this.s = s;
+			header(s);
+		}
+
+		/**
+		 * Writes the rows of a part, in its topological sequence, and flushes them.
+		 *
+		 * @param part the computed part of the schedule
+		 * @throws IOException if the channel can't be written
+		 */
+		public void append(ComputedSchedule part) throws IOException {
+			putRows(s, part, rows(part));
+			s.flush();
+		}
+
+		/**
+		 * Ends the table and flushes it, leaving the channel open.
+		 */
+		@Override
+		public void close() throws IOException {
+			footer(s);
+			s.flush();
+		}
+	}
+
+	/**
+	 * A byte buffer that is written to a channel whenever it fills.
+	 */
+	private static class Sink {
+		private final WritableByteChannel out;
+		private ByteBuffer buf;
+
+		Sink(WritableByteChannel out) {
+			this.out = out;
+			this.buf = ByteBuffer.allocate(BUFFER);
+		}
+
+		/**
+		 * Makes room for at least n more bytes, writing out what is buffered, and
+		 * growing the buffer for a row longer than it.
+		 */
+		void ensure(int n) throws IOException {
+			if (buf.remaining() < n) {
+				flush();
+				if (buf.capacity() < n) {
+					buf = ByteBuffer.allocate(n);
+				}
+			}
+		}
+
+		void flush() throws IOException {
+			buf.flip();
+			while (buf.hasRemaining()) {
+				out.write(buf);
+			}
+			buf.clear();
+		}
+
+		void put(byte b) {
+			buf.put(b);
+		}
+
+		void put(byte[] b) throws IOException {
+			ensure(b.length);
+			buf.put(b);
+		}
+
+		void putAscii(String s) {
+			for (int i = 0; i < s.length(); i++) {
+				buf.put((byte) s.charAt(i));
+			}
+		}
+
+		void putChars(String s) {
+			for (int i = 0; i < s.length(); i++) {
+				putChar(s, i);
+			}
+		}
+
+		/**
+		 * Encodes the character at i as UTF-8, along with the low half of a
+		 * surrogate pair when i is the high half.
+		 */
+		void putChar(String s, int i) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				buf.put((byte) c);
+			} else if (Character.isSurrogate(c)) {
+				if (Character.isHighSurrogate(c)) {
+					buf.put(s.substring(i, Math.min(i + 2, s.length())).getBytes(StandardCharsets.UTF_8));
+				}
+			} else {
+				buf.put(String.valueOf(c).getBytes(StandardCharsets.UTF_8));
+			}
+		}
+
+		void pad(int n) {
+			for (int i = 0; i < n; i++) {
+				buf.put((byte) ' ');
+			}
+		}
+
+		/**
+		 * Writes the decimal form of v without building a string.
+		 */
+		void putInt(int v) {
+			if (v < 0) {
+				buf.put((byte) '-');
+			}
+			long x = Math.abs((long) v);
+			int at = buf.position() + digits(v) - (v < 0 ? 2 : 1);
+			buf.position(at + 1);
+			do {
+				buf.put(at--, (byte) ('0' + x % 10));
+				x /= 10;
+			} while (x > 0);
+		}
+	}
+}
@@ -0,0 +1,364 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Computes an edge list as it is read, for schedules that keep growing, such as
+ * a pipeline whose finish F is redefined as new activities are appended after
+ * it. Memory only holds the activities since the last time F was redefined, so
+ * a schedule can run indefinitely.
+ * <p>
+ * Edges are "from to duration" lines with the same S and F rules as an edge
+ * list, and every edge into an activity must come before the edges out of it.
+ * EC values are found as the edges arrive, since an activity's EC is final
+ * once it has an edge out of it. An edge out of F redefines F: every activity
+ * before it reaches the rest of the schedule only through F, so F has no slack
+ * time, and their LC values are final. They are swept, handed to the sink, and
+ * dropped, and the old F becomes the start of the next segment, whose edges
+ * can still leave it until a new edge points into F. The last segment is
+ * written when the schedule is finished.
+ * <p>
+ * Names of written activities aren't kept, so an edge out of one is rejected,
+ * and an edge into one starts a new activity of the same name.
+ *
+ * @author Aaron Goin
+ */
+public class RollingSchedule {
+	/**
+	 * Receives each segment of a rolling schedule once its values are final.
+	 */
+	public interface Sink {
+		/**
+		 * @param segment the activities of the segment, in a topological sequence;
+		 *                the view is only valid during the call
+		 * @throws IOException if the segment can't be written
+		 */
+		void write(ComputedSchedule segment) throws IOException;
+	}
+
+	private final Sink sink;
+	private final Segment view = new Segment();
+
+	/* The open segment; node 0 is its start, and every other node is id + 1 in symbols */
+	private SymbolTable symbols;
+	private String startName;
+	private int n;// the number of open nodes
+	private int[] eC = new int[16];
+	private int[] lC = new int[16];
+	private int[] dur = new int[16];// the duration of every edge into a node, -1 until one is read
+	private int[] head = new int[16];// the first edge out of each node, -1 if it has none
+	private int[] order = new int[16];// the nodes in the order they got their first edge out, a topological sequence
+	private int sources;
+	private int[] outTgt = new int[16];
+	private int[] outNext = new int[16];// the next edge out of the same node, -1 after the last
+	private int edges;
+
+	private boolean first = true;
+	private boolean finished;
+	private long written;
+	private long edgesRead;
+	private int segments;
+	private int peak;
+
+	/**
+	 * A schedule that starts at S.
+	 *
+	 * @param sink where each segment is written once its values are final
+	 */
+	public RollingSchedule(Sink sink) {
+		this.sink = sink;
+		start("S", 0);
+	}
+
+	/**
+	 * Reads an edge list to its end and finishes the schedule, writing segments
+	 * to the sink as F is redefined.
+	 *
+	 * @param in the edge list, which is read to the end but not closed
+	 * @throws IOException       if the edge list can't be read or a segment
+	 *                           can't be written
+	 * @throws ScheduleException if a line is formatted incorrectly or an edge
+	 *                           breaks the rules, naming the line
+	 */
+	public void read(Reader in) throws IOException, ScheduleException {
+		BufferedReader r = new BufferedReader(in);
+		String line;
+		int lineNum = 0;
+		while ((line = r.readLine()) != null) {
+			lineNum++;
+			line = line.trim();
+			if (line.equals("")) {
+				continue;
+			}
+			String[] parts = line.split("\\s+");
+			if (parts.length != 3) {
+				throw new ScheduleException("line " + lineNum + ": expected \"from to duration\"");
+			}
+			int weight;
+			try {
+				weight = Integer.parseInt(parts[2]);
+			} catch (NumberFormatException e) {
+				throw new ScheduleException("line " + lineNum + ": " + parts[2] + " is not an integer");
+			}
+			try {
+				addEdge(parts[0], parts[1], weight);
+			} catch (ScheduleException e) {
+				throw new ScheduleException("line " + lineNum + ": " + e.getMessage());
+			}
+		}
+		finish();
+	}
+
+	/**
+	 * Adds an edge, finding the EC of the node it points into. An edge out of F
+	 * first writes every node before F to the sink.
+	 *
+	 * @param from   the name of an open node that already has an edge into it,
+	 *               or the start of the segment
+	 * @param to     the name of a new node, or of an open node with no edge out
+	 *               of it yet
+	 * @param weight the duration of the node the edge points into
+	 * @throws IOException       if a segment can't be written
+	 * @throws ScheduleException if the edge breaks the rules
+	 */
+	public void addEdge(String from, String to, int weight) throws IOException, ScheduleException {
+		if (finished) {
+			throw new IllegalStateException("the schedule is finished");
+		}
+		if (weight < 0) {
+			throw new ScheduleException("durations must not be negative");
+		}
+		if (to.equals("S")) {
+			throw new ScheduleException("no edge may point into S");
+		}
+		if (from.equals(to)) {
+			throw new ScheduleException("the nodes have a cycle: " + from + " -> " + to);
+		}
+		if (to.equals("F") && weight != 0) {
+			throw new ScheduleException("every edge into F must be 0");
+		}
+		int u = symbols.id(from) + 1;
+		if (u == 0 && from.equals(startName)) {
+			u = 0;
+		} else if (u == 0) {
+			throw new ScheduleException("no edge into " + from + " has been read, or it was already written");
+		} else if (from.equals("F")) {
+			u = redefine();
+		}
+
+		int v = symbols.intern(to) + 1;
+		if (v == n) {
+			grow();
+			dur[v] = -1;
+			head[v] = -1;
+			eC[v] = 0;
+			n++;
+			peak = Math.max(peak, n);
+		}
+		if (v == u) {
+			throw new ScheduleException("the nodes have a cycle: " + from + " -> " + to);
+		}
+		if (head[v] != -1) {
+			throw new ScheduleException("every edge into " + to + " must come before the edges out of it");
+		}
+		if (dur[v] != -1 && dur[v] != weight) {
+			throw new ScheduleException("every edge into " + to + " must be " + dur[v]);
+		}
+		dur[v] = weight;
+
+		if (edges == outTgt.length) {
+			outTgt = Arrays.copyOf(outTgt, edges * 2);
+			outNext = Arrays.copyOf(outNext, edges * 2);
+		}
+		if (head[u] == -1 && u != 0) {
+			order[sources++] = u;
+		}
+		outTgt[edges] = v;
+		outNext[edges] = head[u];
+		head[u] = edges++;
+		edgesRead++;
+		eC[v] = Math.max(eC[v], eC[u] + weight);
+	}
+
+	/**
+	 * Writes the last segment, ending at F.
+	 *
+	 * @throws IOException       if the segment can't be written
+	 * @throws ScheduleException if F has no predecessor or a node has no adjacent
+	 *                           node
+	 */
+	public void finish() throws IOException, ScheduleException {
+		if (finished) {
+			return;
+		}
+		int f = symbols.id("F") + 1;
+		if (f == 0 || head[0] == -1) {
+			throw new ScheduleException("S needs an adjacent node, and F a predecessor");
+		}
+		close(f);
+		finished = true;
+	}
+
+	/**
+	 * @return the number of nodes held in memory, since F was last redefined
+	 */
+	public int open() {
+		return n;
+	}
+
+	/**
+	 * @return the most nodes that were held in memory at once
+	 */
+	public int peak() {
+		return peak;
+	}
+
+	/**
+	 * @return the number of nodes written to the sink
+	 */
+	public long written() {
+		return written;
+	}
+
+	/**
+	 * @return the number of edges read
+	 */
+	public long edges() {
+		return edgesRead;
+	}
+
+	/**
+	 * @return the number of segments written to the sink
+	 */
+	public int segments() {
+		return segments;
+	}
+
+	/**
+	 * Writes every node before F and makes F the start of the next segment.
+	 *
+	 * @return the start of the next segment
+	 */
+	private int redefine() throws IOException, ScheduleException {
+		int f = symbols.id("F") + 1;
+		int end = eC[f];
+		close(f);
+		start("F", end);
+		return 0;
+	}
+
+	/**
+	 * Discovers the LC values of a segment backwards from F, whose LC is its EC,
+	 * and writes the segment to the sink.
+	 */
+	private void close(int f) throws IOException, ScheduleException {
+		if (sources != n - 1) {
+			for (int v = 1; v < n; v++) {
+				if (head[v] == -1 && v != f) {
+					throw new ScheduleException("node " + symbols.name(v - 1) + " needs an adjacent node");
+				}
+			}
+		}
+		lC[f] = eC[f];
+		for (int i = sources - 1; i > -1; i--) {
+			int v = order[i];
+			int min = Integer.MAX_VALUE;
+			for (int e = head[v]; e != -1; e = outNext[e]) {
+				int t = outTgt[e];
+				min = Math.min(min, lC[t] - dur[t]);
+			}
+			lC[v] = min;
+		}
+		order[sources] = f;
+		view.set(first ? 0 : 1, sources + 1, f);
+		sink.write(view);
+		written += view.size();
+		segments++;
+		first = false;
+	}
+
+	/**
+	 * Empties the segment, keeping its arrays, and starts it at a node.
+	 *
+	 * @param name the name of the start
+	 * @param ec   the EC of the start
+	 */
+	private void start(String name, int ec) {
+		symbols = new SymbolTable();
+		startName = name;
+		n = 1;
+		edges = 0;
+		eC[0] = ec;
+		dur[0] = 0;
+		head[0] = -1;
+		order[0] = 0;
+		sources = 1;
+		peak = Math.max(peak, n);
+	}
+
+	private void grow() {
+		if (n == eC.length) {
+			int cap = n * 2;
+			eC = Arrays.copyOf(eC, cap);
+			lC = Arrays.copyOf(lC, cap);
+			dur = Arrays.copyOf(dur, cap);
+			head = Arrays.copyOf(head, cap);
+			order = Arrays.copyOf(order, cap);
+		}
+	}
+
+	private String name(int v) {
+		return v == 0 ? startName : symbols.name(v - 1);
+	}
+
+	/**
+	 * The nodes of a closed segment, from order[from] to order[to - 1].
+	 */
+	private class Segment implements ComputedSchedule {
+		private int from;
+		private int to;
+		private int f;
+
+		void set(int from, int to, int f) {
+			this.from = from;
+			this.to = to;
+			this.f = f;
+		}
+
+		@Override
+		public int size() {
+			return to - from;
+		}
+
+		@Override
+		public int nodeAt(int i) {
+			return order[from + i];
+		}
+
+		@Override
+		public String getName(int v) {
+			return name(v);
+		}
+
+		@Override
+		public int getEC(int v) {
+			return eC[v];
+		}
+
+		@Override
+		public int getLC(int v) {
+			return lC[v];
+		}
+
+		@Override
+		public int getSlack(int v) {
+			return lC[v] - eC[v];
+		}
+
+		@Override
+		public int getDuration() {
+			return eC[f];
+		}
+	}
+}
@@ -0,0 +1,180 @@
+import java.util.Arrays;
+
+/**
+ * Sweeps EC and LC values for many sets of durations over one network at once.
+ * Each set of durations is a lane, and the values of every lane are stored next
+ * to each other under their node, so a node's row of lanes is one contiguous
+ * run of an array. The sweeps walk the plan's rows once for the whole batch,
+ * and the work per edge is a simple loop over the lanes that the JIT compiles
+ * to SIMD instructions, so a batch of many scenarios costs little more than
+ * memory traffic over a single sweep.
+ * <p>
+ * A batch holds its own arrays, so it must only be used by one thread at a
+ * time.
+ *
+ * @author Aaron Goin
+ */
+public class ScenarioBatch {
+	private final int[] order;
+	private final int[] outOff;
+	private final int[] outTgt;
+	private final int[] inOff;
+	private final int[] inSrc;
+	private final int lanes;
+	private final int[] dur;// dur[v * lanes + k] is the duration of node v in lane k
+	private final int[] eC;
+	private final int[] lC;
+	private final int[] acc;// the row of lanes being reduced, kept apart from eC and lC so the loops vectorize
+
+	/**
+	 * @param plan  the plan of the network
+	 * @param base  the duration of each node, by id, that every lane starts with
+	 * @param lanes the number of scenarios
+	 */
+	public ScenarioBatch(SchedulePlan plan, int[] base, int lanes) {
+		int n = plan.size();
+		if (lanes < 1) {
+			throw new IllegalArgumentException("lanes must be positive");
+		}
+		if (base.length < n) {
+			throw new IllegalArgumentException("base needs a duration for each of the " + n + " nodes");
+		}
+		if ((long) n * lanes > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("too many lanes for " + n + " nodes");
+		}
+		int[][] a = plan.arrays();
+		this.order = plan.order();
+		this.outOff = a[0];
+		this.outTgt = a[1];
+		this.inOff = a[2];
+		this.inSrc = a[3];
+		this.lanes = lanes;
+		dur = new int[n * lanes];
+		eC = new int[n * lanes];
+		lC = new int[n * lanes];
+		acc = new int[lanes];
+		for (int v = 0; v < n; v++) {
+			Arrays.fill(dur, v * lanes, (v + 1) * lanes, base[v]);
+		}
+	}
+
+	/**
+	 * @return the number of scenarios
+	 */
+	public int lanes() {
+		return lanes;
+	}
+
+	/**
+	 * @param lane the scenario
+	 * @param v    a node
+	 * @param d    the duration of the node in the scenario
+	 */
+	public void setDuration(int lane, int v, int d) {
+		dur[index(lane, v)] = d;
+	}
+
+	/**
+	 * @param lane the scenario
+	 * @param d    the duration of each node, by id, in the scenario
+	 */
+	public void setDurations(int lane, int[] d) {
+		checkLane(lane);
+		for (int v = 0; v < order.length; v++) {
+			dur[v * lanes + lane] = d[v];
+		}
+	}
+
+	/**
+	 * Discovers the EC and LC values of every node in every scenario. The EC of a
+	 * node is the latest EC of its predecessors plus its duration, and the LC of a
+	 * node is the earliest LC minus duration of its adjacent nodes, each taken
+	 * lane by lane.
+	 */
+	public void sweep() {
+		int n = order.length;
+		int w = lanes;
+		int s = order[0] * w;
+		Arrays.fill(eC, s, s + w, 0);
+		for (int i = 1; i < n; i++) {
+			int v = order[i] * w;
+			int e = inOff[order[i]];
+			System.arraycopy(eC, inSrc[e] * w, acc, 0, w);
+			for (e++; e < inOff[order[i] + 1]; e++) {
+				int u = inSrc[e] * w;
+				for (int k = 0; k < w; k++) {
+					acc[k] = Math.max(acc[k], eC[u + k]);
+				}
+			}
+			for (int k = 0; k < w; k++) {
+				eC[v + k] = acc[k] + dur[v + k];
+			}
+		}
+
+		int f = order[n - 1] * w;
+		System.arraycopy(eC, f, lC, f, w);
+		for (int i = n - 2; i > -1; i--) {
+			int v = order[i] * w;
+			int e = outOff[order[i]];
+			int t = outTgt[e] * w;
+			for (int k = 0; k < w; k++) {
+				acc[k] = lC[t + k] - dur[t + k];
+			}
+			for (e++; e < outOff[order[i] + 1]; e++) {
+				t = outTgt[e] * w;
+				for (int k = 0; k < w; k++) {
+					acc[k] = Math.min(acc[k], lC[t + k] - dur[t + k]);
+				}
+			}
+			System.arraycopy(acc, 0, lC, v, w);
+		}
+	}
+
+	/**
+	 * @param lane the scenario
+	 * @param v    a node
+	 * @return the EC of the node in the scenario, as of the last sweep
+	 */
+	public int getEC(int lane, int v) {
+		return eC[index(lane, v)];
+	}
+
+	/**
+	 * @param lane the scenario
+	 * @param v    a node
+	 * @return the LC of the node in the scenario, as of the last sweep
+	 */
+	public int getLC(int lane, int v) {
+		return lC[index(lane, v)];
+	}
+
+	/**
+	 * @param lane the scenario
+	 * @param v    a node
+	 * @return the slack time of the node in the scenario, as of the last sweep
+	 */
+	public int getSlack(int lane, int v) {
+		int i = index(lane, v);
+		return lC[i] - eC[i];
+	}
+
+	/**
+	 * @param lane the scenario
+	 * @return the duration of the project in the scenario, the EC of F, as of the
+	 *         last sweep
+	 */
+	public int getDuration(int lane) {
+		return eC[index(lane, order[order.length - 1])];
+	}
+
+	private int index(int lane, int v) {
+		checkLane(lane);
+		return v * lanes + lane;
+	}
+
+	private void checkLane(int lane) {
+		if (lane < 0 || lane >= lanes) {
+			throw new IndexOutOfBoundsException("lane " + lane);
+		}
+	}
+}
@@ -0,0 +1,44 @@
+/**
+ * A checked schedule that is ready to compute: the node names, the graph, and
+ * a topological sequence starting at S and ending at F. A schedule is never
+ * changed once it is loaded, so it can be shared between threads.
+ * 
+ * @author Aaron Goin
+ */
+public class Schedule {
+	private final SymbolTable symbols;
+	private final CsrGraph graph;
+	private final int[] order;
+
+	/**
+	 * @param symbols the node names, where ids are node numbers in the graph
+	 * @param graph   the graph
+	 * @param order   a topological sequence of the graph
+	 */
+	public Schedule(SymbolTable symbols, CsrGraph graph, int[] order) {
+		this.symbols = symbols;
+		this.graph = graph;
+		this.order = order;
+	}
+
+	/**
+	 * @return the node names, which must not be interned into
+	 */
+	public SymbolTable symbols() {
+		return symbols;
+	}
+
+	/**
+	 * @return the graph
+	 */
+	public CsrGraph graph() {
+		return graph;
+	}
+
+	/**
+	 * @return the topological sequence, which must not be changed
+	 */
+	public int[] order() {
+		return order;
+	}
+}
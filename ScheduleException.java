@@ -0,0 +1,17 @@
+/**
+ * Thrown when a schedule can't be loaded or computed because its input breaks
+ * the format or the rules of a topological sequence, such as an edge into S or
+ * a cycle. The message says which rule was broken and where.
+ * 
+ * @author Aaron Goin
+ */
+public class ScheduleException extends Exception {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * @param message the broken rule, and the row, column, or line it was found on
+	 */
+	public ScheduleException(String message) {
+		super(message);
+	}
+}
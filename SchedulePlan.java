@@ -0,0 +1,158 @@
+import java.util.Arrays;
+
+/**
+ * The structural work of a schedule, done once: its node names, its forward
+ * and reverse rows without weights, and its topological sequence. Schedules
+ * that share a network but differ only in durations share a plan, so a new set
+ * of durations goes straight to the EC and LC sweeps without being sorted or
+ * checked again. A plan is never changed once it is made, so it can be shared
+ * between threads.
+ *
+ * @author Aaron Goin
+ */
+public class SchedulePlan {
+	private final SymbolTable symbols;
+	private final int[] order;
+	private final int[] outOff;
+	private final int[] outTgt;
+	private final int[] inOff;
+	private final int[] inSrc;
+
+	/**
+	 * @param symbols the node names, where ids are node numbers in the graph
+	 * @param graph   the graph, whose weights aren't kept
+	 * @param order   a checked topological sequence of the graph
+	 */
+	SchedulePlan(SymbolTable symbols, CsrGraph graph, int[] order) {
+		int[][] a = graph.arrays();
+		this.symbols = symbols;
+		this.order = order;
+		this.outOff = a[0];
+		this.outTgt = a[1];
+		this.inOff = a[3];
+		this.inSrc = a[4];
+	}
+
+	/**
+	 * @return the rows, as {outOff, outTgt, inOff, inSrc}
+	 */
+	int[][] arrays() {
+		return new int[][] { outOff, outTgt, inOff, inSrc };
+	}
+
+	/**
+	 * Hashes the node names and edges of a graph, but not its weights, so graphs
+	 * that only differ in durations hash the same.
+	 *
+	 * @param symbols the node names
+	 * @param graph   the graph
+	 * @return the structural hash
+	 */
+	static long hash(SymbolTable symbols, CsrGraph graph) {
+		int[][] a = graph.arrays();
+		long h = graph.size();
+		for (int v = 0; v < symbols.size(); v++) {
+			h = h * 0x9E3779B97F4A7C15L + symbols.name(v).hashCode();
+		}
+		for (int x : a[0]) {
+			h = h * 0x9E3779B97F4A7C15L + x;
+		}
+		for (int x : a[1]) {
+			h = h * 0x9E3779B97F4A7C15L + x;
+		}
+		return h ^ (h >>> 29);
+	}
+
+	/**
+	 * @param symbols the node names
+	 * @param graph   the graph
+	 * @return true if the graph has the same node names and edges as the plan
+	 */
+	boolean matches(SymbolTable symbols, CsrGraph graph) {
+		int[][] a = graph.arrays();
+		if (symbols.size() != this.symbols.size() || !Arrays.equals(a[0], outOff) || !Arrays.equals(a[1], outTgt)) {
+			return false;
+		}
+		for (int v = 0; v < symbols.size(); v++) {
+			if (!symbols.name(v).equals(this.symbols.name(v))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return order.length;
+	}
+
+	/**
+	 * @return the node names of the schedule the plan was made from
+	 */
+	public SymbolTable symbols() {
+		return symbols;
+	}
+
+	/**
+	 * @return the topological sequence, which must not be changed
+	 */
+	public int[] order() {
+		return order;
+	}
+
+	/**
+	 * Reads the durations of a graph with the plan's structure into a vector
+	 * sweep() takes, where each node's duration is the value of every edge into
+	 * it.
+	 *
+	 * @param graph a graph the plan matches
+	 * @return the duration of each node, by id, which is 0 for S
+	 */
+	public int[] durations(CsrGraph graph) {
+		int[] dur = new int[order.length];
+		for (int v = 0; v < dur.length; v++) {
+			if (inOff[v] < inOff[v + 1]) {
+				dur[v] = graph.inWeight(inOff[v]);
+			}
+		}
+		return dur;
+	}
+
+	/**
+	 * Discovers the EC and LC values of every node for one set of durations.
+	 * Every edge into a node has the node's duration, so the EC of a node is the
+	 * latest EC of its predecessors plus its duration, and the LC of a node is the
+	 * earliest LC minus duration of its adjacent nodes.
+	 *
+	 * @param dur the duration of each node, by id
+	 * @param eC  the EC of each node, filled in by id
+	 * @param lC  the LC of each node, filled in by id
+	 */
+	public void sweep(int[] dur, int[] eC, int[] lC) {
+		int n = order.length;
+		if (dur.length < n || eC.length < n || lC.length < n) {
+			throw new IllegalArgumentException("the arrays need room for " + n + " nodes");
+		}
+		eC[order[0]] = 0;
+		for (int i = 1; i < n; i++) {
+			int v = order[i];
+			int max = Integer.MIN_VALUE;
+			for (int e = inOff[v]; e < inOff[v + 1]; e++) {
+				max = Math.max(max, eC[inSrc[e]]);
+			}
+			eC[v] = max + dur[v];
+		}
+		int f = order[n - 1];
+		lC[f] = eC[f];
+		for (int i = n - 2; i > -1; i--) {
+			int v = order[i];
+			int min = Integer.MAX_VALUE;
+			for (int e = outOff[v]; e < outOff[v + 1]; e++) {
+				min = Math.min(min, lC[outTgt[e]] - dur[outTgt[e]]);
+			}
+			lC[v] = min;
+		}
+	}
+}
@@ -0,0 +1,114 @@
+/**
+ * The EC, LC, and slack time of every node in a schedule, in a topological
+ * sequence. A result is never changed once it is computed, so it can be shared
+ * between threads. Its nodes sorted by slack time are built the first time
+ * they're asked for, and kept.
+ * 
+ * @author Aaron Goin
+ */
+public class ScheduleResult implements ComputedSchedule {
+	private final Schedule schedule;
+	private final int[] eC;
+	private final int[] lC;
+	private volatile SlackIndex index;
+
+	/**
+	 * @param schedule the computed schedule
+	 * @param eC       the EC value of each node
+	 * @param lC       the LC value of each node
+	 */
+	ScheduleResult(Schedule schedule, int[] eC, int[] lC) {
+		this.schedule = schedule;
+		this.eC = eC;
+		this.lC = lC;
+	}
+
+	/**
+	 * @return the schedule the result was computed from
+	 */
+	public Schedule getSchedule() {
+		return schedule;
+	}
+
+	/**
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return eC.length;
+	}
+
+	/**
+	 * @param i a place in the topological sequence, from 0 to size() - 1
+	 * @return the node at that place
+	 */
+	public int nodeAt(int i) {
+		return schedule.order()[i];
+	}
+
+	/**
+	 * @param name the name of a node
+	 * @return the node with that name, or -1 if there isn't one
+	 */
+	public int idOf(String name) {
+		return schedule.symbols().id(name);
+	}
+
+	/**
+	 * @param v a node
+	 * @return the name of the node
+	 */
+	public String getName(int v) {
+		return schedule.symbols().name(v);
+	}
+
+	/**
+	 * @param v a node
+	 * @return the EC value of the node
+	 */
+	public int getEC(int v) {
+		return eC[v];
+	}
+
+	/**
+	 * @param v a node
+	 * @return the LC value of the node
+	 */
+	public int getLC(int v) {
+		return lC[v];
+	}
+
+	/**
+	 * @param v a node
+	 * @return the slack time of the node, its LC minus its EC
+	 */
+	public int getSlack(int v) {
+		return lC[v] - eC[v];
+	}
+
+	/**
+	 * @return the nodes sorted by slack time, for threshold, range, and top-k
+	 *         queries
+	 */
+	public SlackIndex slackIndex() {
+		SlackIndex i = index;
+		if (i == null) {
+			i = new SlackIndex(this);
+			index = i;// two threads may both build it, and either is kept
+		}
+		return i;
+	}
+
+	/**
+	 * @return the slack index if one has already been built, or null
+	 */
+	SlackIndex cachedSlackIndex() {
+		return index;
+	}
+
+	/**
+	 * @return the EC value of F, which is the length of the project
+	 */
+	public int getDuration() {
+		return eC[nodeAt(size() - 1)];
+	}
+}
@@ -0,0 +1,432 @@
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes schedules sent over a local TCP or Unix-domain socket, so a warm JVM
+ * answers each request instead of a new one starting per file. Each connection
+ * is read on its own thread, and can send any number of requests, one line of
+ * text at a time:
+ * <ul>
+ * <li>COMPUTE matrix|edges [table|csv|json], then the lines of the matrix or
+ * edge list, then a line that is only END. The reply is OK and the length of
+ * the body in bytes, then the body, which is what the console would show.</li>
+ * <li>STATS replies with OK and the number of requests and errors, the
+ * throughput, and latency percentiles of the most recent requests.</li>
+ * <li>QUIT closes the connection.</li>
+ * </ul>
+ * Anything that can't be computed is answered with ERROR and a message on one
+ * line. A request's payload is limited to {@value #MAX_LINES} lines and
+ * {@value #MAX_CHARS} characters, so one client can't fill the heap; a larger
+ * one is answered with ERROR and its connection is closed.
+ * <p>
+ * Only computing a request takes a worker pool thread, so idle connections
+ * don't keep other clients waiting. At most {@value #MAX_CONNECTIONS}
+ * connections are open at once, and any more are answered with ERROR and
+ * closed. Adjacency matrices are parsed from memory-mapped files, so a matrix
+ * is spooled to a temporary file before it is loaded.
+ *
+ * @author Aaron Goin
+ */
+public class ScheduleServer implements Closeable {
+	private static final int WINDOW = 4096;// the recent requests latency percentiles are taken over
+	static final int MAX_LINES = 1 << 21;// the most lines in a request's payload
+	static final int MAX_CHARS = 1 << 25;// the most characters in a request's payload
+	private static final int MAX_COMMAND = 1024;// the most characters in a command line
+	static final int MAX_CONNECTIONS = 64;// the most connections open at once
+
+	private final CriticalPathEngine engine;
+	private final boolean criticalOnly;
+	private final int topK;
+	private final char format;
+	private final ServerSocketChannel server;
+	private final SocketAddress address;
+	private final ExecutorService workers;// computes requests
+	private final ExecutorService connections;// reads requests and writes replies
+	private final Semaphore open = new Semaphore(MAX_CONNECTIONS);
+	private final long started = System.nanoTime();
+
+	private final long[] latency = new long[WINDOW];// nanoseconds, a ring of the most recent requests
+	private long requests;
+	private long errors;
+
+	/**
+	 * Binds the server to an address, without accepting connections yet.
+	 *
+	 * @param engine       the engine every request is computed by
+	 * @param format       the format used when a request doesn't name one, 't',
+	 *                     'c', or 'j'
+	 * @param criticalOnly true to only reply with nodes with no slack time
+	 * @param topK         the most nodes in a reply, keeping the ones with the
+	 *                     least slack time, or 0 for every node
+	 * @param threads      the number of requests computed at once
+	 * @param address      a loopback InetSocketAddress, or a
+	 *                     UnixDomainSocketAddress
+	 * @throws IOException if the address can't be bound
+	 */
+	public ScheduleServer(CriticalPathEngine engine, char format, boolean criticalOnly, int topK, int threads,
+			SocketAddress address) throws IOException {
+		new ResultWriter(format, criticalOnly, topK);// checks the settings
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be positive");
+		}
+		this.engine = engine;
+		this.format = format;
+		this.criticalOnly = criticalOnly;
+		this.topK = topK;
+		server = address instanceof UnixDomainSocketAddress ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+				: ServerSocketChannel.open();
+		server.bind(address);
+		this.address = server.getLocalAddress();
+		workers = Executors.newFixedThreadPool(threads);
+		connections = Executors.newCachedThreadPool();
+	}
+
+	/**
+	 * @return the address the server is bound to
+	 */
+	public SocketAddress address() {
+		return address;
+	}
+
+	/**
+	 * Accepts connections until the server is closed, reading each one on its own
+	 * thread, or refusing it if too many are open.
+	 *
+	 * @throws IOException if a connection can't be accepted
+	 */
+	public void serve() throws IOException {
+		while (true) {
+			SocketChannel client;
+			try {
+				client = server.accept();
+			} catch (ClosedChannelException e) {
+				return;
+			}
+			if (!open.tryAcquire()) {
+				refuse(client);
+				continue;
+			}
+			try {
+				connections.execute(() -> {
+					try {
+						handle(client);
+					} finally {
+						open.release();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				open.release();
+				client.close();// the server is closing
+			}
+		}
+	}
+
+	/**
+	 * Stops accepting connections, waits briefly for requests being computed, then
+	 * closes the open connections and removes the socket file of a Unix-domain
+	 * address.
+	 */
+	@Override
+	public void close() throws IOException {
+		server.close();
+		workers.shutdown();
+		connections.shutdown();
+		try {
+			workers.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		connections.shutdownNow();// interrupting a read closes its connection
+		if (address instanceof UnixDomainSocketAddress) {
+			Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+		}
+	}
+
+	/**
+	 * Serves the requests of one connection until it sends QUIT or closes, with
+	 * Nagle's algorithm off so each reply is sent as soon as it's written. A
+	 * connection that fails is logged, since it can't be answered.
+	 */
+	private void handle(SocketChannel client) {
+		try (SocketChannel ch = client) {
+			if (!(address instanceof UnixDomainSocketAddress)) {
+				ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			}
+			serveRequests(ch);
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Dropped a connection: " + e);
+		}
+	}
+
+	/**
+	 * Answers a connection past the limit with ERROR and closes it.
+	 */
+	private static void refuse(SocketChannel client) {
+		try (SocketChannel ch = client) {
+			error(Channels.newOutputStream(ch), "the server already has " + MAX_CONNECTIONS + " connections open");
+		} catch (IOException e) {
+			System.err.println("Dropped a connection: " + e);
+		}
+	}
+
+	private void serveRequests(SocketChannel ch) throws IOException {
+		try (Reader r = new InputStreamReader(Channels.newInputStream(ch), StandardCharsets.UTF_8);
+				OutputStream out = Channels.newOutputStream(ch)) {
+			LineReader in = new LineReader(r);
+			String line;
+			while ((line = in.readLine(MAX_COMMAND)) != null) {
+				if (line.length() > MAX_COMMAND) {
+					error(out, "a command can have at most " + MAX_COMMAND + " characters");
+					return;
+				}
+				String[] parts = line.trim().split("\\s+");
+				if (parts[0].equals("QUIT")) {
+					return;
+				} else if (parts[0].equals("STATS")) {
+					reply(out, stats().getBytes(StandardCharsets.UTF_8));
+				} else if (parts[0].equals("COMPUTE")) {
+					if (!compute(parts, in, out)) {
+						return;
+					}
+				} else if (!parts[0].equals("")) {
+					error(out, "unknown command " + parts[0]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the payload of a COMPUTE request, computes it, and replies.
+	 *
+	 * @return false if the connection can't be read any further, because it
+	 *         closed or the payload was too large
+	 */
+	private boolean compute(String[] parts, LineReader in, OutputStream out) throws IOException {
+		long start = System.nanoTime();
+		StringBuilder payload = new StringBuilder();
+		int lines = 0;
+		String line;
+		while ((line = in.readLine(MAX_CHARS - payload.length())) != null && !line.equals("END")) {
+			if (++lines > MAX_LINES || line.length() >= MAX_CHARS - payload.length()) {
+				/* The rest of the payload can't be told apart from the next request */
+				record(System.nanoTime() - start, true);
+				error(out, "a request can have at most " + MAX_LINES + " lines and " + MAX_CHARS + " characters");
+				return false;
+			}
+			payload.append(line).append('\n');
+		}
+		if (line == null) {
+			return false;// the connection closed partway through the payload
+		}
+
+		char f = format;
+		if (parts.length > 2) {
+			boolean known = parts[2].equals("table") || parts[2].equals("csv") || parts[2].equals("json");
+			f = known ? parts[2].charAt(0) : 0;
+		}
+		byte[] body = null;
+		String error = null;
+		if (parts.length < 2 || parts.length > 3 || f == 0
+				|| !parts[1].equals("matrix") && !parts[1].equals("edges")) {
+			error = "expected COMPUTE matrix|edges [table|csv|json]";
+		} else {
+			boolean edges = parts[1].equals("edges");
+			char chosen = f;
+			try {
+				body = workers.submit(() -> table(edges, chosen, payload)).get();
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				error = cause instanceof ScheduleException ? "improper format: " + cause.getMessage()
+						: cause.toString();
+			} catch (RejectedExecutionException e) {
+				error = "the server is closing";
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				error = "the server is closing";
+			}
+		}
+		record(System.nanoTime() - start, error != null);
+		if (error != null) {
+			error(out, error);
+		} else {
+			reply(out, body);
+		}
+		return true;
+	}
+
+	/**
+	 * Loads and computes a request's payload on a worker pool thread.
+	 *
+	 * @return the body of the reply
+	 */
+	private byte[] table(boolean edges, char f, CharSequence payload) throws IOException, ScheduleException {
+		Schedule schedule = edges ? engine.loadEdgeList(new StringReader(payload.toString())) : loadMatrix(payload);
+		ByteArrayOutputStream table = new ByteArrayOutputStream();
+		new ResultWriter(f, criticalOnly, topK).write(engine.compute(schedule), Channels.newChannel(table));
+		return table.toByteArray();
+	}
+
+	/**
+	 * Spools a matrix to a temporary file, which the parser maps, and loads it.
+	 */
+	private Schedule loadMatrix(CharSequence payload) throws IOException, ScheduleException {
+		File tmp = File.createTempFile("schedule", ".txt");
+		try {
+			try (Writer w = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(tmp.toPath()),
+					StandardCharsets.UTF_8))) {
+				w.append(payload);
+			}
+			return engine.loadMatrix(tmp.getPath());
+		} finally {
+			Files.deleteIfExists(tmp.toPath());
+		}
+	}
+
+	/**
+	 * Writes the header and body in one write, so a small reply isn't held back
+	 * waiting on the client's acknowledgement of its header.
+	 */
+	private static void reply(OutputStream out, byte[] body) throws IOException {
+		byte[] head = ("OK " + body.length + "\n").getBytes(StandardCharsets.US_ASCII);
+		byte[] all = Arrays.copyOf(head, head.length + body.length);
+		System.arraycopy(body, 0, all, head.length, body.length);
+		out.write(all);
+		out.flush();
+	}
+
+	private static void error(OutputStream out, String message) throws IOException {
+		out.write(("ERROR " + message.replace('\n', ' ') + "\n").getBytes(StandardCharsets.UTF_8));
+		out.flush();
+	}
+
+	private synchronized void record(long nanos, boolean failed) {
+		latency[(int) (requests % WINDOW)] = nanos;
+		requests++;
+		if (failed) {
+			errors++;
+		}
+	}
+
+	/**
+	 * @return the number of requests and errors, the throughput since the server
+	 *         started, and the latency percentiles of the most recent requests
+	 */
+	public String stats() {
+		long[] recent;
+		long count;
+		long failed;
+		synchronized (this) {
+			count = requests;
+			failed = errors;
+			recent = Arrays.copyOf(latency, (int) Math.min(count, WINDOW));
+		}
+		Arrays.sort(recent);
+		double seconds = (System.nanoTime() - started) / 1e9;
+		StringBuilder s = new StringBuilder();
+		s.append("requests ").append(count).append('\n');
+		s.append("errors ").append(failed).append('\n');
+		s.append(String.format("uptime %.1f s%n", seconds));
+		s.append(String.format("throughput %.2f requests/s%n", count / seconds));
+		s.append(String.format("latency ms (last %d) p50 %.3f p90 %.3f p99 %.3f max %.3f%n", recent.length,
+				percentile(recent, 50), percentile(recent, 90), percentile(recent, 99),
+				percentile(recent, 100)));
+		return s.toString();
+	}
+
+	/**
+	 * @return the nearest-rank percentile of sorted latencies, in milliseconds
+	 */
+	private static double percentile(long[] sorted, double p) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int rank = (int) Math.ceil(p / 100 * sorted.length);
+		return sorted[Math.max(0, rank - 1)] / 1e6;
+	}
+
+	/**
+	 * Reads the lines of a connection, like BufferedReader.readLine, but stops
+	 * once a line is longer than a limit instead of holding all of it.
+	 */
+	private static class LineReader {
+		private final Reader in;
+		private final char[] buf = new char[8192];
+		private int pos;
+		private int end;
+		private boolean skipLF;// true if the last line ended with a carriage return
+
+		LineReader(Reader in) {
+			this.in = in;
+		}
+
+		/**
+		 * @param max the most characters the line can have
+		 * @return the next line without its terminator, which is longer than max
+		 *         if the line is, or null at the end of the stream
+		 * @throws IOException if the connection can't be read
+		 */
+		String readLine(int max) throws IOException {
+			StringBuilder line = null;
+			while (true) {
+				if (pos == end) {
+					end = in.read(buf);
+					pos = 0;
+					if (end <= 0) {
+						end = 0;
+						return line == null ? null : line.toString();
+					}
+				}
+				if (skipLF) {
+					skipLF = false;
+					if (buf[pos] == '\n') {
+						pos++;
+						continue;
+					}
+				}
+				int i = pos;
+				while (i < end && buf[i] != '\n' && buf[i] != '\r') {
+					i++;
+				}
+				if (line == null) {
+					line = new StringBuilder(Math.min(i - pos, max + 1));
+				}
+				line.append(buf, pos, Math.min(i - pos, max + 1 - line.length()));
+				pos = i;
+				if (line.length() > max) {
+					return line.toString();
+				}
+				if (i < end) {
+					skipLF = buf[i] == '\r';
+					pos++;
+					return line.toString();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,163 @@
+import java.util.Arrays;
+
+/**
+ * The nodes of a computed schedule sorted by slack time, least first, with ties
+ * in topological order. Each node is one long key, its slack time in the high
+ * half and its place in the topological sequence in the low half, so the index
+ * is a single primitive array. Threshold, range, and top-k queries find their
+ * bounds by binary search and copy out what's between them, in O(log n + k)
+ * time.
+ * <p>
+ * When a schedule is recomputed with new durations, update() sorts the new
+ * slack times starting from the old index's order. Most nodes keep their
+ * place, so an insertion sort finishes in close to linear time, and a full sort
+ * is only done when too much has moved. An index is never changed once it is
+ * built, so it can be shared between threads.
+ *
+ * @author Aaron Goin
+ */
+public class SlackIndex {
+	private static final int MOVES = 8;// the insertion sort's budget of moves per node before it gives up
+
+	private final ComputedSchedule result;
+	private final long[] keys;
+
+	/**
+	 * Sorts the nodes of a result by slack time.
+	 *
+	 * @param result the computed schedule
+	 */
+	public SlackIndex(ComputedSchedule result) {
+		this.result = result;
+		int n = result.size();
+		keys = new long[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = key(result.getSlack(result.nodeAt(i)), i);
+		}
+		Arrays.sort(keys);
+	}
+
+	private SlackIndex(ComputedSchedule result, long[] keys) {
+		this.result = result;
+		this.keys = keys;
+	}
+
+	/**
+	 * Sorts the nodes of a recomputed result, starting from this index's order.
+	 *
+	 * @param recomputed the schedule with new values, with the same number of
+	 *                   nodes
+	 * @return the index of the recomputed result
+	 */
+	public SlackIndex update(ComputedSchedule recomputed) {
+		int n = keys.length;
+		if (recomputed.size() != n) {
+			throw new IllegalArgumentException("the result has " + recomputed.size() + " nodes instead of " + n);
+		}
+		long[] k = new long[n];
+		for (int r = 0; r < n; r++) {
+			int i = (int) keys[r];
+			k[r] = key(recomputed.getSlack(recomputed.nodeAt(i)), i);
+		}
+
+		/* Insertion sort, until it has moved more than the budget allows */
+		long budget = (long) MOVES * n;
+		for (int r = 1; r < n; r++) {
+			long x = k[r];
+			int j = r - 1;
+			while (j >= 0 && k[j] > x) {
+				k[j + 1] = k[j];
+				j--;
+			}
+			k[j + 1] = x;
+			budget -= r - 1 - j;
+			if (budget < 0) {
+				Arrays.sort(k);
+				break;
+			}
+		}
+		return new SlackIndex(recomputed, k);
+	}
+
+	/**
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return keys.length;
+	}
+
+	/**
+	 * @param rank a place in the index, from 0 to size() - 1
+	 * @return the node with that rank, 0 having the least slack time
+	 */
+	public int nodeAt(int rank) {
+		return result.nodeAt((int) keys[rank]);
+	}
+
+	/**
+	 * @param rank a place in the index, from 0 to size() - 1
+	 * @return the slack time of the node with that rank
+	 */
+	public int slackAt(int rank) {
+		return (int) (keys[rank] >> 32);
+	}
+
+	/**
+	 * @param threshold a slack time
+	 * @return the number of nodes with less slack time than the threshold
+	 */
+	public int countBelow(int threshold) {
+		return rank(threshold);
+	}
+
+	/**
+	 * @param threshold a slack time
+	 * @return the nodes with less slack time than the threshold, least first
+	 */
+	public int[] below(int threshold) {
+		return nodes(0, rank(threshold));
+	}
+
+	/**
+	 * @param lo the least slack time, inclusive
+	 * @param hi the most slack time, inclusive
+	 * @return the nodes with slack time from lo to hi, least first
+	 */
+	public int[] between(int lo, int hi) {
+		if (lo > hi) {
+			return new int[0];
+		}
+		return nodes(rank(lo), hi == Integer.MAX_VALUE ? keys.length : rank(hi + 1));
+	}
+
+	/**
+	 * @param k the number of nodes
+	 * @return the k nodes with the least slack time, least first
+	 */
+	public int[] top(int k) {
+		if (k < 0) {
+			throw new IllegalArgumentException("k must not be negative");
+		}
+		return nodes(0, Math.min(k, keys.length));
+	}
+
+	/**
+	 * @return the rank of the first node with at least the given slack time
+	 */
+	private int rank(int slack) {
+		int i = Arrays.binarySearch(keys, key(slack, 0));
+		return i < 0 ? -i - 1 : i;
+	}
+
+	private int[] nodes(int from, int to) {
+		int[] nodes = new int[to - from];
+		for (int r = from; r < to; r++) {
+			nodes[r - from] = result.nodeAt((int) keys[r]);
+		}
+		return nodes;
+	}
+
+	private static long key(int slack, int place) {
+		return (long) slack << 32 | place;
+	}
+}
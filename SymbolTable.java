@@ -0,0 +1,120 @@
+import java.util.Arrays;
+
+/**
+ * Interns node names to dense int ids, in the order the names are first seen.
+ * Names map to ids through an open-addressing hash table, and ids map back to
+ * names through an array, so both lookups take constant time.
+ *
+ * @author Aaron Goin
+ */
+public class SymbolTable {
+	private String[] names;
+	private int[] slots;// id + 1 of the name hashed to each slot, 0 if empty
+	private int size;
+
+	/**
+	 * An empty table.
+	 */
+	public SymbolTable() {
+		this(16);
+	}
+
+	/**
+	 * An empty table with room for a number of names before it has to grow.
+	 *
+	 * @param expected the number of names expected
+	 */
+	public SymbolTable(int expected) {
+		int cap = 16;
+		while (cap < expected * 2) {
+			cap <<= 1;
+		}
+		names = new String[Math.max(expected, 16)];
+		slots = new int[cap];
+	}
+
+	/**
+	 * Gets the id of a name, giving it the next free id if it hasn't been seen.
+	 *
+	 * @param name the name of a node
+	 * @return the id of the name
+	 */
+	public int intern(String name) {
+		int mask = slots.length - 1;
+		int i = hash(name) & mask;
+		while (slots[i] != 0) {
+			if (names[slots[i] - 1].equals(name)) {
+				return slots[i] - 1;
+			}
+			i = (i + 1) & mask;
+		}
+
+		if (size == names.length) {
+			names = Arrays.copyOf(names, size * 2);
+		}
+		names[size] = name;
+		slots[i] = ++size;
+		if (size * 2 > slots.length) {
+			rehash();
+		}
+		return size - 1;
+	}
+
+	/**
+	 * @param name the name of a node
+	 * @return the id of the name, or -1 if it hasn't been interned
+	 */
+	public int id(String name) {
+		int mask = slots.length - 1;
+		int i = hash(name) & mask;
+		while (slots[i] != 0) {
+			if (names[slots[i] - 1].equals(name)) {
+				return slots[i] - 1;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param id the id of a node
+	 * @return the name the id was given to
+	 */
+	public String name(int id) {
+		return names[id];
+	}
+
+	/**
+	 * @return the number of interned names
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Doubles the hash table and puts every id back into it.
+	 */
+	private void rehash() {
+		slots = new int[slots.length * 2];
+		int mask = slots.length - 1;
+		for (int id = 0; id < size; id++) {
+			int i = hash(names[id]) & mask;
+			while (slots[i] != 0) {
+				i = (i + 1) & mask;
+			}
+			slots[i] = id + 1;
+		}
+	}
+
+	/**
+	 * Spreads the bits of a String's hash code, since the table only uses the low
+	 * ones.
+	 *
+	 * @param name the name being hashed
+	 * @return the mixed hash
+	 */
+	private static int hash(String name) {
+		int h = name.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,276 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Times each phase of loading and computing generated schedules, and each
+ * pipeline end to end, so a change in any one phase shows up on its own line.
+ * Every phase is warmed up, then run a number of times, and reported with its
+ * throughput, mean, median and 99th percentile latency, and the bytes it
+ * allocates per run and per second on the calling thread.
+ * <p>
+ * Adjacency matrices grow with the square of the node count, so matrix phases
+ * only run up to a node limit; larger schedules are timed from edge lists.
+ *
+ * @author Aaron Goin
+ */
+public class CriticalPathBench {
+	private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+	private static volatile Object sink;// keeps each run's result alive
+	private static final int SCENARIOS = 64;// lanes of the scenario batch phase
+
+	private final int warmup;
+	private final int iterations;
+
+	/**
+	 * The work that is timed.
+	 */
+	private interface Phase {
+		Object run() throws Exception;
+	}
+
+	/**
+	 * @param warmup     the runs of each phase that aren't measured
+	 * @param iterations the runs of each phase that are measured
+	 */
+	private CriticalPathBench(int warmup, int iterations) {
+		this.warmup = warmup;
+		this.iterations = iterations;
+	}
+
+	/**
+	 * Runs a phase and prints a line of its measurements.
+	 *
+	 * @param label the shape and size being measured
+	 * @param name  the name of the phase
+	 * @param phase the work that is timed
+	 */
+	private void measure(String label, String name, Phase phase) throws Exception {
+		for (int i = 0; i < warmup; i++) {
+			sink = phase.run();
+		}
+
+		long tid = Thread.currentThread().getId();
+		long[] nanos = new long[iterations];
+		long bytes = 0;
+		for (int i = 0; i < iterations; i++) {
+			long a0 = THREADS.getThreadAllocatedBytes(tid);
+			long t0 = System.nanoTime();
+			sink = phase.run();
+			nanos[i] = System.nanoTime() - t0;
+			bytes += THREADS.getThreadAllocatedBytes(tid) - a0;
+		}
+
+		Arrays.sort(nanos);
+		long total = 0;
+		for (long t : nanos) {
+			total += t;
+		}
+		double mean = total / 1e6 / iterations;
+		double p50 = nanos[(iterations - 1) / 2] / 1e6;
+		double p99 = nanos[(int) Math.ceil(iterations * 0.99) - 1] / 1e6;
+		double mbPerOp = bytes / 1048576.0 / iterations;
+		System.out.printf("%-22s %-16s %12.2f %10.3f %10.3f %10.3f %10.2f %10.1f%n", label, name, 1000 / mean, mean,
+				p50, p99, mbPerOp, mbPerOp * 1000 / mean);
+	}
+
+	/**
+	 * Generates one schedule and times every phase of it.
+	 *
+	 * @param shape       the shape of the schedule
+	 * @param n           the number of nodes
+	 * @param matrixLimit the most nodes a matrix is generated for
+	 * @param dir         the directory the generated files are written to
+	 */
+	private void run(String shape, int n, int matrixLimit, File dir) throws Exception {
+		CsrGraph generated = DagGenerator.generate(shape, n, n);
+		String label = shape + " " + n + "/" + generated.edgeCount();
+		File edges = new File(dir, shape + n + ".edges.txt");
+		DagGenerator.writeEdgeList(generated, edges.getPath());
+		generated = null;
+
+		CriticalPathEngine engine = new CriticalPathEngine();
+		CriticalPathEngine parallel = new CriticalPathEngine(true);
+		Schedule schedule = engine.loadEdgeList(edges.getPath());
+		CsrGraph graph = schedule.graph();
+		SymbolTable symbols = schedule.symbols();
+		int[] order = schedule.order();
+		int[] eC = new int[graph.size()];
+		int[] lC = new int[graph.size()];
+
+		measure(label, "loadEdgeList", () -> engine.loadEdgeList(edges.getPath()));
+		measure(label, "sortTopo", () -> CriticalPathEngine.sortTopo(symbols, graph));
+		measure(label, "discoverECVals", () -> {
+			CriticalPathEngine.discoverECVals(graph, order, eC);
+			return eC;
+		});
+		measure(label, "discoverLCVals", () -> {
+			CriticalPathEngine.discoverLCVals(graph, order, eC, lC);
+			return lC;
+		});
+		measure(label, "levelSweep", () -> {
+			LevelSweep levels = new LevelSweep(graph, order);
+			levels.discoverEC(eC, ForkJoinPool.commonPool());
+			levels.discoverLC(eC, lC, ForkJoinPool.commonPool());
+			return levels;
+		});
+		measure(label, "componentSweep", () -> {
+			ComponentSweep parts = new ComponentSweep(graph, order);
+			parts.discoverEC(eC, ForkJoinPool.commonPool());
+			parts.discoverLC(eC, lC, ForkJoinPool.commonPool());
+			return parts;
+		});
+		SchedulePlan plan = engine.plan(schedule);
+		int[] dur = plan.durations(graph);
+		measure(label, "plan sweep", () -> {
+			plan.sweep(dur, eC, lC);
+			return lC;
+		});
+		if ((long) graph.size() * SCENARIOS * 12 < Runtime.getRuntime().maxMemory() / 2) {
+			ScenarioBatch batch = new ScenarioBatch(plan, dur, SCENARIOS);
+			measure(label, "scenarios x" + SCENARIOS, () -> {
+				batch.sweep();
+				return batch;
+			});
+		}
+		PlanCache plans = new PlanCache(1);
+		CriticalPathEngine cached = new CriticalPathEngine(false, plans);
+		cached.loadEdgeList(edges.getPath());
+		measure(label, "loadEdgeList plan", () -> cached.loadEdgeList(edges.getPath()));
+		ScheduleResult result = engine.compute(schedule);
+		ResultWriter table = new ResultWriter();
+		measure(label, "ResultWriter", () -> {
+			table.write(result, Channels.newChannel(OutputStream.nullOutputStream()));
+			return table;
+		});
+		SlackIndex index = new SlackIndex(result);
+		int[] dur2 = dur.clone();
+		dur2[order[order.length / 2]] += 3;
+		int[] eC2 = new int[graph.size()];
+		int[] lC2 = new int[graph.size()];
+		plan.sweep(dur2, eC2, lC2);
+		ScheduleResult changed = new ScheduleResult(schedule, eC2, lC2);
+		measure(label, "SlackIndex", () -> new SlackIndex(result));
+		measure(label, "SlackIndex update", () -> index.update(changed));
+		measure(label, "SlackIndex queries", () -> {
+			int found = 0;
+			for (int t = 0; t < 1000; t++) {
+				found += index.top(100).length + index.countBelow(t % 8);
+			}
+			return found;
+		});
+		measure(label, "edgeList e2e", () -> engine.compute(engine.loadEdgeList(edges.getPath())));
+		measure(label, "edgeList e2e -p", () -> parallel.compute(parallel.loadEdgeList(edges.getPath())));
+
+		File compiled = new File(dir, shape + n + ".cpg");
+		engine.compile(schedule, compiled.getPath());
+		measure(label, "loadCompiled", () -> engine.loadCompiled(compiled.getPath()));
+
+		if (n <= matrixLimit) {
+			runMatrix(label, shape, n, dir);
+		}
+	}
+
+	/**
+	 * Times the phases that only a matrix goes through.
+	 */
+	private void runMatrix(String label, String shape, int n, File dir) throws Exception {
+		File matrix = new File(dir, shape + n + ".matrix.txt");
+		DagGenerator.writeMatrix(DagGenerator.generate(shape, n, n), matrix.getPath());
+
+		CriticalPathEngine engine = new CriticalPathEngine();
+		measure(label, "parse", () -> {
+			MatrixParser p = new MatrixParser(matrix.getPath());
+			p.parse(1);
+			return p.graph();
+		});
+		measure(label, "matrix e2e", () -> engine.compute(engine.loadMatrix(matrix.getPath())));
+	}
+
+	/**
+	 * Runs the benchmarks.
+	 * <p>
+	 * Usage: java CriticalPathBench [-s &lt;shapes&gt;] [-n &lt;sizes&gt;] [-w
+	 * &lt;warmup&gt;] [-i &lt;iterations&gt;] [-m &lt;matrix limit&gt;]
+	 *
+	 * @param args the flags, where shapes and sizes are separated by commas
+	 */
+	public static void main(String[] args) throws Exception {
+		List<String> shapes = Arrays.asList(DagGenerator.SHAPES);
+		int[] sizes = { 1000, 10000, 100000, 1000000 };
+		int warmup = 5;
+		int iterations = 10;
+		int matrixLimit = 5000;
+		try {
+			for (int i = 0; i < args.length; i += 2) {
+				String val = args[i + 1];
+				switch (args[i]) {
+				case "-s":
+					shapes = Arrays.asList(val.split(","));
+					break;
+				case "-n":
+					sizes = Arrays.stream(val.split(",")).mapToInt(Integer::parseInt).toArray();
+					break;
+				case "-w":
+					warmup = Integer.parseInt(val);
+					break;
+				case "-i":
+					iterations = Integer.parseInt(val);
+					break;
+				case "-m":
+					matrixLimit = Integer.parseInt(val);
+					break;
+				default:
+					throw new IllegalArgumentException(args[i]);
+				}
+			}
+		} catch (RuntimeException e) {
+			System.out.println("Usage: java CriticalPathBench [-s <shapes>] [-n <sizes>] [-w <warmup>]"
+					+ " [-i <iterations>] [-m <matrix limit>]");
+			System.exit(1);
+		}
+		if (iterations < 1) {
+			iterations = 1;
+		}
+
+		CriticalPathBench bench = new CriticalPathBench(warmup, iterations);
+		File dir = Files.createTempDirectory("cpbench").toFile();
+		System.out.printf("%-22s %-16s %12s %10s %10s %10s %10s %10s%n", "shape nodes/edges", "phase", "ops/s",
+				"mean ms", "p50 ms", "p99 ms", "MB/op", "MB/s");
+		try {
+			for (String shape : shapes) {
+				for (int n : sizes) {
+					/* A dense schedule has about n * n / 4 edges, as many as a matrix has cells */
+					if (shape.equals("dense") && n > matrixLimit) {
+						continue;
+					}
+					bench.run(shape, n, matrixLimit, dir);
+				}
+			}
+		} finally {
+			deleteAll(dir);
+		}
+	}
+
+	/**
+	 * @param dir the directory of generated files to remove
+	 * @throws IOException if a file can't be removed
+	 */
+	private static void deleteAll(File dir) throws IOException {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				Files.delete(f.toPath());
+			}
+		}
+		Files.delete(dir.toPath());
+	}
+}
@@ -0,0 +1,268 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Generates synthetic schedules that follow the S and F rules, and writes them
+ * as adjacency matrices or edge lists. Node 0 is S, node n - 1 is F, and every
+ * other node is named a1, a2, and so on. Each node has one duration, which is
+ * the value of every edge into it, and F's duration is 0. Every node other than
+ * S gets a predecessor, and every node without an adjacent node is joined to F.
+ * <p>
+ * The shapes are:
+ * <ul>
+ * <li>chain: S, a1, a2, ... F, one after another</li>
+ * <li>layered: about sqrt(n) levels of about sqrt(n) nodes, each node with two
+ * predecessors in the level before it</li>
+ * <li>sparse: two predecessors per node, one of them close by in the
+ * sequence</li>
+ * <li>dense: every pair of nodes joined with a probability of one half, so the
+ * edge count grows with n squared</li>
+ * <li>fanin: every node starts at S and feeds one of a few hub nodes, each with
+ * about 1000 predecessors</li>
+ * </ul>
+ *
+ * @author Aaron Goin
+ */
+public class DagGenerator {
+	static final String[] SHAPES = { "chain", "layered", "sparse", "dense", "fanin" };
+	private static final int HUB_FANIN = 1000;// predecessors of each fanin hub
+
+	private final int n;
+	private final SplittableRandom rand;
+	private final int[] dur;
+	private int[] src;
+	private int[] dst;
+	private int m;
+
+	/**
+	 * @param n    the number of nodes, including S and F
+	 * @param seed the seed for durations and edges
+	 */
+	private DagGenerator(int n, long seed) {
+		this.n = n;
+		this.rand = new SplittableRandom(seed);
+		this.dur = new int[n];
+		for (int v = 1; v < n - 1; v++) {
+			dur[v] = 1 + rand.nextInt(20);
+		}
+		src = new int[Math.max(16, 2 * n)];
+		dst = new int[src.length];
+	}
+
+	/**
+	 * Generates a schedule.
+	 *
+	 * @param shape one of SHAPES
+	 * @param n     the number of nodes, including S and F, at least 3
+	 * @param seed  the seed for durations and edges
+	 * @return the schedule's graph, with node numbers as described above
+	 */
+	public static CsrGraph generate(String shape, int n, long seed) {
+		if (n < 3) {
+			throw new IllegalArgumentException("a schedule needs at least 3 nodes");
+		}
+		DagGenerator g = new DagGenerator(n, seed);
+		switch (shape) {
+		case "chain":
+			g.chain();
+			break;
+		case "layered":
+			g.layered();
+			break;
+		case "sparse":
+			g.sparse();
+			break;
+		case "dense":
+			g.dense();
+			break;
+		case "fanin":
+			g.fanin();
+			break;
+		default:
+			throw new IllegalArgumentException("unknown shape " + shape);
+		}
+		return g.finish();
+	}
+
+	/**
+	 * @param v the node number
+	 * @param n the number of nodes
+	 * @return the node's name
+	 */
+	public static String name(int v, int n) {
+		return v == 0 ? "S" : v == n - 1 ? "F" : "a" + v;
+	}
+
+	private void chain() {
+		for (int v = 0; v < n - 1; v++) {
+			edge(v, v + 1);
+		}
+	}
+
+	private void layered() {
+		int inner = n - 2;
+		int width = Math.max(1, (int) Math.sqrt(inner));
+		for (int v = 1; v <= inner; v++) {
+			int level = (v - 1) / width;
+			if (level == 0) {
+				edge(0, v);
+				continue;
+			}
+			int lo = 1 + (level - 1) * width;
+			int a = lo + rand.nextInt(width);
+			edge(a, v);
+			if (width > 1) {
+				int b = lo + rand.nextInt(width - 1);
+				edge(b >= a ? b + 1 : b, v);
+			}
+		}
+	}
+
+	private void sparse() {
+		for (int v = 1; v < n - 1; v++) {
+			int a = v - 1 - rand.nextInt(Math.min(v, 64));
+			edge(a, v);
+			int b = rand.nextInt(v);
+			if (b != a) {
+				edge(b, v);
+			}
+		}
+	}
+
+	private void dense() {
+		for (int v = 1; v < n - 1; v++) {
+			edge(0, v);
+			for (int u = 1; u < v; u++) {
+				if (rand.nextBoolean()) {
+					edge(u, v);
+				}
+			}
+		}
+	}
+
+	private void fanin() {
+		int inner = n - 2;
+		int hubs = Math.max(1, inner / (HUB_FANIN + 1));
+		int first = n - 1 - hubs;
+		for (int v = 1; v < first; v++) {
+			edge(0, v);
+			edge(v, first + v % hubs);
+		}
+		if (first == 1) {
+			edge(0, first);// too few nodes for anything but the hub
+		}
+	}
+
+	/**
+	 * Joins every node without an adjacent node to F, and packs the edges.
+	 */
+	private CsrGraph finish() {
+		boolean[] hasAdj = new boolean[n];
+		for (int e = 0; e < m; e++) {
+			hasAdj[src[e]] = true;
+		}
+		for (int v = 1; v < n - 1; v++) {
+			if (!hasAdj[v]) {
+				edge(v, n - 1);
+			}
+		}
+		int[] w = new int[m];
+		for (int e = 0; e < m; e++) {
+			w[e] = dur[dst[e]];
+		}
+		return new CsrGraph(n, src, dst, w, m);
+	}
+
+	private void edge(int from, int to) {
+		if (m == src.length) {
+			src = Arrays.copyOf(src, m * 2);
+			dst = Arrays.copyOf(dst, m * 2);
+		}
+		src[m] = from;
+		dst[m] = to;
+		m++;
+	}
+
+	/**
+	 * Writes a graph as an adjacency matrix text file, with S first and F last.
+	 *
+	 * @param graph    a generated graph
+	 * @param filename the name of the file to write
+	 * @throws IOException if the file can't be written
+	 */
+	public static void writeMatrix(CsrGraph graph, String filename) throws IOException {
+		int n = graph.size();
+		String[] cells = new String[n];
+		try (BufferedWriter out = new BufferedWriter(new FileWriter(filename), 1 << 16)) {
+			for (int v = 0; v < n; v++) {
+				out.write(' ');
+				out.write(name(v, n));
+			}
+			out.newLine();
+			for (int v = 0; v < n; v++) {
+				Arrays.fill(cells, "-1");
+				for (int e = graph.outStart(v); e < graph.outEnd(v); e++) {
+					cells[graph.outTarget(e)] = Integer.toString(graph.outWeight(e));
+				}
+				out.write(name(v, n));
+				for (String c : cells) {
+					out.write(' ');
+					out.write(c);
+				}
+				out.newLine();
+			}
+		}
+	}
+
+	/**
+	 * Writes a graph as an edge list text file, one "from to duration" line per
+	 * edge, grouped by the node each edge comes from.
+	 *
+	 * @param graph    a generated graph
+	 * @param filename the name of the file to write
+	 * @throws IOException if the file can't be written
+	 */
+	public static void writeEdgeList(CsrGraph graph, String filename) throws IOException {
+		int n = graph.size();
+		try (BufferedWriter out = new BufferedWriter(new FileWriter(filename), 1 << 16)) {
+			for (int v = 0; v < n; v++) {
+				for (int e = graph.outStart(v); e < graph.outEnd(v); e++) {
+					out.write(name(v, n));
+					out.write(' ');
+					out.write(name(graph.outTarget(e), n));
+					out.write(' ');
+					out.write(Integer.toString(graph.outWeight(e)));
+					out.newLine();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes one generated schedule.
+	 * <p>
+	 * Usage: java DagGenerator &lt;shape&gt; &lt;nodes&gt; &lt;seed&gt;
+	 * &lt;matrix file | -&gt; &lt;edge list file | -&gt;
+	 *
+	 * @param args the shape, node count, seed, and the files to write, where -
+	 *             skips a format
+	 * @throws IOException if a file can't be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 5) {
+			System.out.println("Usage: java DagGenerator <" + String.join(" | ", SHAPES)
+					+ "> <nodes> <seed> <matrix file | -> <edge list file | ->");
+			System.exit(1);
+		}
+		CsrGraph graph = generate(args[0], Integer.parseInt(args[1]), Long.parseLong(args[2]));
+		if (!args[3].equals("-")) {
+			writeMatrix(graph, args[3]);
+		}
+		if (!args[4].equals("-")) {
+			writeEdgeList(graph, args[4]);
+		}
+	}
+}
@@ -0,0 +1,191 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Checks IncrementalSchedule against full runs. Each generated schedule gets a
+ * run of random edits: durations changed, edges added and removed, and edge
+ * values changed where that is allowed. After every edit, each node's EC and LC
+ * must match a full run of the edited graph, and edits that would break the
+ * matrix rules must be rejected without changing anything.
+ *
+ * @author Aaron Goin
+ */
+public class IncrementalCheck {
+	private final int n;
+	private final SplittableRandom rand;
+	private final IncrementalSchedule inc;
+	private final int[] dur;
+	private final boolean[][] edge;// edge[u][v] is true if the edited graph has an edge from u to v
+	private final int s;
+	private final int f;
+	private int edits;
+
+	/**
+	 * @param graph a generated schedule
+	 * @param seed  the seed for the edits
+	 */
+	private IncrementalCheck(CsrGraph graph, long seed) {
+		n = graph.size();
+		rand = new SplittableRandom(seed);
+		int[] order = graph.topoOrder();
+		s = order[0];
+		f = order[n - 1];
+		inc = new IncrementalSchedule(graph, order);
+		dur = new int[n];
+		edge = new boolean[n][n];
+		for (int v = 0; v < n; v++) {
+			for (int e = graph.outStart(v); e < graph.outEnd(v); e++) {
+				edge[v][graph.outTarget(e)] = true;
+				dur[graph.outTarget(e)] = graph.outWeight(e);
+			}
+		}
+	}
+
+	/**
+	 * Makes random edits, checking the values after each one.
+	 *
+	 * @param count the number of edits tried
+	 */
+	private void run(int count) {
+		check();
+		for (int i = 0; i < count; i++) {
+			int u = rand.nextInt(n);
+			int v = rand.nextInt(n);
+			switch (rand.nextInt(5)) {
+			case 0:
+				if (v != s && v != f) {
+					dur[v] = rand.nextInt(30);
+					inc.setDuration(v, dur[v]);
+					edits++;
+				}
+				break;
+			case 1:
+				if (tryEdit(() -> inc.addEdge(u, v, dur[v]))) {
+					edge[u][v] = true;
+				}
+				break;
+			case 2:
+				if (tryEdit(() -> inc.removeEdge(u, v))) {
+					edge[u][v] = false;
+				}
+				break;
+			case 3:
+				if (edge[u][v] && v != f && inDegree(v) == 1) {
+					dur[v] = rand.nextInt(30);
+					inc.setWeight(u, v, dur[v]);
+					edits++;
+				}
+				break;
+			default:
+				/* Values that break the rules */
+				if (edge[u][v] && (v == f || inDegree(v) > 1)) {
+					reject(() -> inc.setWeight(u, v, dur[v] + 1));
+				} else if (v == f || v == s) {
+					reject(() -> inc.setDuration(v, 1));
+				} else if (u != f && v != s && u != v && !edge[u][v]) {
+					reject(() -> inc.addEdge(u, v, dur[v] + 1));
+				}
+				break;
+			}
+			check();
+		}
+	}
+
+	/**
+	 * Makes an edit that may be rejected, such as an edge that would close a
+	 * cycle.
+	 *
+	 * @return true if the edit was made
+	 */
+	private boolean tryEdit(Runnable edit) {
+		try {
+			edit.run();
+			edits++;
+			return true;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Makes an edit that must be rejected.
+	 */
+	private void reject(Runnable edit) {
+		if (tryEdit(edit)) {
+			throw new IllegalStateException("an edit that breaks the rules was made");
+		}
+	}
+
+	private int inDegree(int v) {
+		int deg = 0;
+		for (int u = 0; u < n; u++) {
+			if (edge[u][v]) {
+				deg++;
+			}
+		}
+		return deg;
+	}
+
+	/**
+	 * Runs the edited graph in full and compares every node's EC and LC.
+	 */
+	private void check() {
+		int m = 0;
+		int[] src = new int[16];
+		int[] dst = new int[16];
+		int[] w = new int[16];
+		for (int u = 0; u < n; u++) {
+			for (int v = 0; v < n; v++) {
+				if (edge[u][v]) {
+					if (m == src.length) {
+						src = Arrays.copyOf(src, m * 2);
+						dst = Arrays.copyOf(dst, m * 2);
+						w = Arrays.copyOf(w, m * 2);
+					}
+					src[m] = u;
+					dst[m] = v;
+					w[m++] = dur[v];
+				}
+			}
+		}
+		CsrGraph graph = new CsrGraph(n, src, dst, w, m);
+		int[] order = graph.topoOrder();
+		int[] eC = new int[n];
+		int[] lC = new int[n];
+		CriticalPathEngine.discoverECVals(graph, order, eC);
+		CriticalPathEngine.discoverLCVals(graph, order, eC, lC);
+		for (int v = 0; v < n; v++) {
+			if (inc.getEC(v) != eC[v] || inc.getLC(v) != lC[v]) {
+				throw new IllegalStateException("node " + v + " after " + edits + " edits: EC " + inc.getEC(v)
+						+ " and LC " + inc.getLC(v) + " instead of " + eC[v] + " and " + lC[v]);
+			}
+		}
+	}
+
+	/**
+	 * Checks random edits of generated schedules.
+	 *
+	 * @param args optionally the number of schedules, default 200, and the edits
+	 *             of each, default 200
+	 */
+	public static void main(String[] args) {
+		int graphs = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int count = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		String[] shapes = { "chain", "layered", "sparse", "dense" };
+		SplittableRandom rand = new SplittableRandom(1);
+		long edits = 0;
+		for (int i = 0; i < graphs; i++) {
+			String shape = shapes[i % shapes.length];
+			int n = 3 + rand.nextInt(shape.equals("dense") ? 40 : 150);
+			IncrementalCheck c = new IncrementalCheck(DagGenerator.generate(shape, n, i), i);
+			try {
+				c.run(count);
+			} catch (IllegalStateException e) {
+				System.out.println(shape + " schedule " + i + " with " + n + " nodes: " + e.getMessage());
+				System.exit(1);
+			}
+			edits += c.edits;
+		}
+		System.out.println(graphs + " schedules, " + edits + " edits, every EC and LC matched a full run");
+	}
+}